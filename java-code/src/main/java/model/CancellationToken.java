@@ -0,0 +1,60 @@
+package model;
+
+/**
+ * Stops a solve method of {@link LineSwapper} from the outside: explicitly by {@link #cancel()} (from any thread) or
+ * when its deadline has passed.
+ * The solve methods check it regularly and then return a {@link SolveOutcome} that timed out.
+ * One token can be shared by several solve calls, e.g., all instances of one batch.
+ */
+public class CancellationToken {
+
+    /**
+     * Token that is never cancelled.
+     */
+    public static final CancellationToken NEVER = new CancellationToken(false, 0);
+
+    private final boolean hasDeadline;
+    //in terms of System.nanoTime()
+    private final long deadline;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Token without a deadline; it is cancelled only by {@link #cancel()}.
+     */
+    public CancellationToken() {
+        this(false, 0);
+    }
+
+    private CancellationToken(boolean hasDeadline, long deadline) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return token that is cancelled timeoutMillis milliseconds from now (or by {@link #cancel()} before)
+     */
+    public static CancellationToken withTimeout(long timeoutMillis) {
+        return new CancellationToken(true, System.nanoTime() + timeoutMillis * 1_000_000L);
+    }
+
+    public void cancel() {
+        if (this == NEVER) {
+            throw new UnsupportedOperationException("The token NEVER cannot be cancelled.");
+        }
+        cancelled = true;
+    }
+
+    /**
+     * Once this returns true, it stays true.
+     */
+    public boolean isCancelled() {
+        if (cancelled) {
+            return true;
+        }
+        if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            cancelled = true;
+            return true;
+        }
+        return false;
+    }
+}
@@ -32,6 +32,17 @@ public class CycleFinder {
         return false;
     }
 
+    /**
+     * Kahn's algorithm on the primitive representation: the graph is acyclic iff a topological order contains all
+     * vertices.
+     *
+     * @param realizationGraph
+     * @return
+     */
+    public static boolean containsCycle(RealizationGraph realizationGraph) {
+        return realizationGraph.getTopologicalOrder().length != realizationGraph.getVertexCount();
+    }
+
     private static <V, E> boolean isCyclicUtil(DirectedGraph<V, E> diGraph, V v, LinkedHashSet<V> visited, LinkedHashSet<V> recStack) {
         // Mark the current node as visited and
         // part of recursion stack
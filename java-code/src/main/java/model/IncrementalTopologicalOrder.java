@@ -0,0 +1,318 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Online topological order of a directed acyclic graph on the vertices 0, ..., n-1 as described by Pearce and Kelly
+ * ("A Dynamic Topological Sort Algorithm for Directed Acyclic Graphs", 2006).
+ *
+ * Inserting an edge u -> v only does work if v is currently ordered before u; then only the vertices ordered between
+ * v and u that are reachable from v (or reach u) are visited and reordered.
+ * An edge closing a cycle is rejected and not inserted; the labels of the edges on the path it would have closed to a
+ * cycle are available afterwards.
+ * Removing an edge never invalidates the order, hence it is just removed from the adjacency lists.
+ */
+public class IncrementalTopologicalOrder {
+
+    private static final int[] NO_NEIGHBORS = new int[0];
+
+    private final int numberOfVertices;
+    /**
+     * position of each vertex in the topological order
+     */
+    private final int[] positionOf;
+
+    private final int[][] successors;
+    private final int[][] successorLabels;
+    private final int[] successorCount;
+    private final int[][] predecessors;
+    private final int[] predecessorCount;
+
+    //helpers for the searches, a vertex is visited iff its mark equals the current visit stamp
+    private final int[] visitMark;
+    private int visitStamp = 0;
+    private int[] stack;
+    private int[] forwardVisited;
+    private int forwardVisitedCount;
+    private int[] backwardVisited;
+    private int backwardVisitedCount;
+    private int[] positionsBuffer;
+    //for the forward search: the vertex and the edge label it was reached by
+    private final int[] parentOf;
+    private final int[] parentLabelOf;
+    private int[] cycleLabels = new int[16];
+    private int cycleLength = 0;
+
+    public IncrementalTopologicalOrder(int numberOfVertices) {
+        this.numberOfVertices = numberOfVertices;
+        this.positionOf = new int[numberOfVertices];
+        for (int v = 0; v < numberOfVertices; v++) {
+            positionOf[v] = v;
+        }
+        this.successors = new int[numberOfVertices][];
+        this.successorLabels = new int[numberOfVertices][];
+        this.predecessors = new int[numberOfVertices][];
+        Arrays.fill(successors, NO_NEIGHBORS);
+        Arrays.fill(successorLabels, NO_NEIGHBORS);
+        Arrays.fill(predecessors, NO_NEIGHBORS);
+        this.successorCount = new int[numberOfVertices];
+        this.predecessorCount = new int[numberOfVertices];
+        this.visitMark = new int[numberOfVertices];
+        this.stack = new int[16];
+        this.forwardVisited = new int[16];
+        this.backwardVisited = new int[16];
+        this.positionsBuffer = new int[16];
+        this.parentOf = new int[numberOfVertices];
+        this.parentLabelOf = new int[numberOfVertices];
+    }
+
+    public int getNumberOfVertices() {
+        return numberOfVertices;
+    }
+
+    public int getPosition(int vertex) {
+        return positionOf[vertex];
+    }
+
+    public boolean containsEdge(int source, int target) {
+        int[] targets = successors[source];
+        for (int i = successorCount[source] - 1; i >= 0; i--) {
+            if (targets[i] == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts source -> target if this does not close a cycle.
+     * The edge must not be contained yet.
+     *
+     * @return false iff the edge would close a cycle; then nothing is changed
+     */
+    public boolean addEdge(int source, int target) {
+        return addEdge(source, target, 0);
+    }
+
+    /**
+     * Inserts source -> target with label if this does not close a cycle.
+     * The edge must not be contained yet.
+     *
+     * @return false iff the edge would close a cycle; then nothing is changed except for the path returned by
+     * {@link #getCycleLabels()}
+     */
+    public boolean addEdge(int source, int target, int label) {
+        int lowerBound = positionOf[target];
+        int upperBound = positionOf[source];
+        cycleLength = 0;
+        if (source == target) {
+            return false;
+        }
+        if (lowerBound < upperBound) {
+            //discovery: forward from target (within the affected region) must not reach source
+            ++visitStamp;
+            if (!searchForward(target, upperBound, source)) {
+                return false;
+            }
+            searchBackward(source, lowerBound);
+            reorder();
+        }
+        successorLabels[source] = append(successorLabels[source], successorCount[source], label);
+        successors[source] = append(successors[source], successorCount[source]++, target);
+        predecessors[target] = append(predecessors[target], predecessorCount[target]++, source);
+        return true;
+    }
+
+    public void removeEdge(int source, int target) {
+        int[] targets = successors[source];
+        int count = successorCount[source];
+        for (int i = count - 1; i >= 0; i--) {
+            if (targets[i] == target) {
+                targets[i] = targets[count - 1];
+                successorLabels[source][i] = successorLabels[source][count - 1];
+                successorCount[source] = count - 1;
+                break;
+            }
+        }
+        predecessorCount[target] = remove(predecessors[target], predecessorCount[target], source);
+    }
+
+    public int getSuccessorCount(int vertex) {
+        return successorCount[vertex];
+    }
+
+    /**
+     * @return the successors in the first {@link #getSuccessorCount(int)} entries; must not be modified
+     */
+    public int[] getSuccessors(int vertex) {
+        return successors[vertex];
+    }
+
+    /**
+     * @return the labels of the successors (in the same order) in the first {@link #getSuccessorCount(int)} entries;
+     * must not be modified
+     */
+    public int[] getSuccessorLabels(int vertex) {
+        return successorLabels[vertex];
+    }
+
+    /**
+     * @return number of edges on the path of the last rejected edge, see {@link #getCycleLabels()}
+     */
+    public int getCycleLength() {
+        return cycleLength;
+    }
+
+    /**
+     * If the last call of {@link #addEdge(int, int, int)} rejected source -> target, then the first
+     * {@link #getCycleLength()} entries are the labels of the edges of a path from target to source, in reverse order.
+     * Must not be modified.
+     */
+    public int[] getCycleLabels() {
+        return cycleLabels;
+    }
+
+    public int getPredecessorCount(int vertex) {
+        return predecessorCount[vertex];
+    }
+
+    /**
+     * @return the predecessors in the first {@link #getPredecessorCount(int)} entries; must not be modified
+     */
+    public int[] getPredecessors(int vertex) {
+        return predecessors[vertex];
+    }
+
+    /**
+     * Depth-first search from start over vertices with position < upperBound.
+     *
+     * @return false iff forbidden is reachable
+     */
+    private boolean searchForward(int start, int upperBound, int forbidden) {
+        forwardVisitedCount = 0;
+        int stackSize = 0;
+        stack = ensureCapacity(stack, 1);
+        stack[stackSize++] = start;
+        visitMark[start] = visitStamp;
+        while (stackSize > 0) {
+            int vertex = stack[--stackSize];
+            forwardVisited = ensureCapacity(forwardVisited, forwardVisitedCount + 1);
+            forwardVisited[forwardVisitedCount++] = vertex;
+            int[] targets = successors[vertex];
+            for (int i = 0; i < successorCount[vertex]; i++) {
+                int successor = targets[i];
+                if (successor == forbidden) {
+                    recordCycle(start, vertex, successorLabels[vertex][i]);
+                    return false;
+                }
+                if (visitMark[successor] != visitStamp && positionOf[successor] < upperBound) {
+                    visitMark[successor] = visitStamp;
+                    parentOf[successor] = vertex;
+                    parentLabelOf[successor] = successorLabels[vertex][i];
+                    stack = ensureCapacity(stack, stackSize + 1);
+                    stack[stackSize++] = successor;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the labels of the path start -> ... -> last -> forbidden found by the forward search.
+     */
+    private void recordCycle(int start, int last, int lastLabel) {
+        cycleLength = 0;
+        cycleLabels[cycleLength++] = lastLabel;
+        for (int vertex = last; vertex != start; vertex = parentOf[vertex]) {
+            cycleLabels = ensureCapacity(cycleLabels, cycleLength + 1);
+            cycleLabels[cycleLength++] = parentLabelOf[vertex];
+        }
+    }
+
+    /**
+     * Depth-first search backwards from start over vertices with position > lowerBound.
+     */
+    private void searchBackward(int start, int lowerBound) {
+        backwardVisitedCount = 0;
+        int stackSize = 0;
+        stack = ensureCapacity(stack, 1);
+        stack[stackSize++] = start;
+        visitMark[start] = visitStamp;
+        while (stackSize > 0) {
+            int vertex = stack[--stackSize];
+            backwardVisited = ensureCapacity(backwardVisited, backwardVisitedCount + 1);
+            backwardVisited[backwardVisitedCount++] = vertex;
+            int[] sources = predecessors[vertex];
+            for (int i = 0; i < predecessorCount[vertex]; i++) {
+                int predecessor = sources[i];
+                if (visitMark[predecessor] != visitStamp && positionOf[predecessor] > lowerBound) {
+                    visitMark[predecessor] = visitStamp;
+                    stack = ensureCapacity(stack, stackSize + 1);
+                    stack[stackSize++] = predecessor;
+                }
+            }
+        }
+    }
+
+    /**
+     * The backward visited vertices get the smallest of the freed positions (keeping their relative order), the
+     * forward visited vertices the remaining ones.
+     */
+    private void reorder() {
+        sortByPosition(backwardVisited, backwardVisitedCount);
+        sortByPosition(forwardVisited, forwardVisitedCount);
+        int total = backwardVisitedCount + forwardVisitedCount;
+        positionsBuffer = ensureCapacity(positionsBuffer, total);
+        for (int i = 0; i < backwardVisitedCount; i++) {
+            positionsBuffer[i] = positionOf[backwardVisited[i]];
+        }
+        for (int i = 0; i < forwardVisitedCount; i++) {
+            positionsBuffer[backwardVisitedCount + i] = positionOf[forwardVisited[i]];
+        }
+        Arrays.sort(positionsBuffer, 0, total);
+        for (int i = 0; i < backwardVisitedCount; i++) {
+            positionOf[backwardVisited[i]] = positionsBuffer[i];
+        }
+        for (int i = 0; i < forwardVisitedCount; i++) {
+            positionOf[forwardVisited[i]] = positionsBuffer[backwardVisitedCount + i];
+        }
+    }
+
+    private void sortByPosition(int[] vertices, int count) {
+        //vertices and positions are < 2^31, so sort them as packed (position, vertex) longs
+        long[] packed = new long[count];
+        for (int i = 0; i < count; i++) {
+            packed[i] = ((long) positionOf[vertices[i]] << 32) | vertices[i];
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < count; i++) {
+            vertices[i] = (int) packed[i];
+        }
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        array = ensureCapacity(array, index + 1);
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * @return new number of entries
+     */
+    private static int remove(int[] array, int count, int value) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (array[i] == value) {
+                array[i] = array[count - 1];
+                return count - 1;
+            }
+        }
+        return count;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length < capacity) {
+            return Arrays.copyOf(array, Math.max(capacity, Math.max(4, 2 * array.length)));
+        }
+        return array;
+    }
+}
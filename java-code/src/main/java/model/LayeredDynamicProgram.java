@@ -0,0 +1,469 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Dynamic program over the states of the swapping process, layer by layer (as in dynamic_recursive.py).
+ *
+ * A state is given by the number of swaps still to be executed for every pair of lines, packed into one long in mixed
+ * radix (digit = remaining swaps of the pair, base = number of swaps of the pair + 1).
+ * The permutation of the lines in a state follows from the parities of the executed swaps, so it is not part of the
+ * key; it is maintained along the recursion instead.
+ * A layer executes a nonempty set of disjoint swaps of neighboring lines.
+ * For every state visited, the minimum number of layers to execute all remaining swaps is memoized.
+ *
+ * The number of states is the product of (number of swaps + 1) over all pairs, so this suits instances with few lines
+ * even if they have many swaps per pair.
+ *
+ * The recursions are run on explicit stacks, since they get as deep as there are swaps (or layers).
+ *
+ * If the {@link CancellationToken} is cancelled, the recursion unwinds without memoizing the states it is in, so the
+ * memoized values stay correct for later calls.
+ */
+class LayeredDynamicProgram {
+
+    //memoized value of states from which not all remaining swaps can be executed
+    private static final int INFEASIBLE = Integer.MAX_VALUE;
+    //position of a frame of computeMinimumNumberOfLayers that is one of a state
+    private static final int STATE_FRAME = -1;
+
+    private final SwapIndexer swapIndexer;
+    private final int numberOfLines;
+
+    //per pair (see SwapIndexer#getPairRank): the weight of its digit in the state and the swaps still to be executed
+    private final long[] weight;
+    private final int[] remaining;
+    //the line at each position
+    private final int[] lineAt;
+
+    private final StateTable minimumNumberOfLayers = new StateTable();
+    private CancellationToken cancellationToken = CancellationToken.NEVER;
+
+    //swaps (ids of the swap indexer) in the order of their execution
+    private int[] executionSequence;
+    private int executionSequenceLength;
+
+    //stack of the recursion of computeMinimumNumberOfLayers; per frame the position in the layer (or STATE_FRAME),
+    //the state, whether the layer is nonempty, how far the frame got, and its minimum so far
+    private int[] framePosition = new int[0];
+    private long[] frameState = new long[0];
+    private boolean[] frameIsLayerNonempty = new boolean[0];
+    private int[] framePhase = new int[0];
+    private int[] frameBest = new int[0];
+
+    /**
+     * @throws IllegalArgumentException
+     *      if the number of states does not fit into a long
+     */
+    LayeredDynamicProgram(SwapIndexer swapIndexer) {
+        this.swapIndexer = swapIndexer;
+        this.numberOfLines = swapIndexer.getNumberOfLines();
+        int numberOfPairs = numberOfLines * (numberOfLines - 1) / 2;
+        this.weight = new long[numberOfPairs];
+        this.remaining = new int[numberOfPairs];
+        this.lineAt = new int[numberOfLines];
+        long numberOfStates = 1;
+        for (int i = 0; i < numberOfLines - 1; i++) {
+            for (int j = i + 1; j < numberOfLines; j++) {
+                int pair = swapIndexer.getPairRank(i, j);
+                weight[pair] = numberOfStates;
+                try {
+                    numberOfStates = Math.multiplyExact(numberOfStates, swapIndexer.getNumberOfSwaps(i, j) + 1);
+                }
+                catch (ArithmeticException e) {
+                    throw new IllegalArgumentException("Too many states for the dynamic program.", e);
+                }
+            }
+        }
+        this.executionSequence = new int[swapIndexer.getNumberOfSwaps()];
+    }
+
+    /**
+     * Finds any execution sequence, one swap per step.
+     */
+    SolveOutcome<RealizationGraph> computeOneRealization(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        long state = reset();
+        if (!executeAll(state)) {
+            return cancellationToken.isCancelled() ? SolveOutcome.timedOut(null) : SolveOutcome.infeasible();
+        }
+        return SolveOutcome.solved(toRealizationGraph());
+    }
+
+    /**
+     * @return a realization of minimum height; infeasible if no realization exists or if the minimum height exceeds
+     * maxHeight
+     */
+    SolveOutcome<RealizationGraph> computeOneMinHeightRealization(int maxHeight, CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        long state = reset();
+        int numberOfLayers = computeMinimumNumberOfLayers(state);
+        if (cancellationToken.isCancelled()) {
+            return SolveOutcome.timedOut(null);
+        }
+        if (numberOfLayers == INFEASIBLE || numberOfLayers > maxHeight) {
+            return SolveOutcome.infeasible();
+        }
+        //go along the memoized values
+        while (state != 0) {
+            findLayer(state, numberOfLayers - 1);
+            state = getState();
+            --numberOfLayers;
+        }
+        return SolveOutcome.solved(toRealizationGraph());
+    }
+
+    /**
+     * @return the state in which all swaps are still to be executed
+     */
+    private long reset() {
+        long state = 0;
+        for (int i = 0; i < numberOfLines - 1; i++) {
+            for (int j = i + 1; j < numberOfLines; j++) {
+                int pair = swapIndexer.getPairRank(i, j);
+                remaining[pair] = swapIndexer.getNumberOfSwaps(i, j);
+                state += remaining[pair] * weight[pair];
+            }
+        }
+        for (int position = 0; position < numberOfLines; position++) {
+            lineAt[position] = position;
+        }
+        executionSequenceLength = 0;
+        return state;
+    }
+
+    private long getState() {
+        long state = 0;
+        for (int pair = 0; pair < remaining.length; pair++) {
+            state += remaining[pair] * weight[pair];
+        }
+        return state;
+    }
+
+    /**
+     * Depth-first search executing one swap per step; states without completion are memoized.
+     *
+     * @return true iff all swaps are executed then (and recorded in the execution sequence)
+     */
+    private boolean executeAll(long state) {
+        if (state == 0) {
+            return true;
+        }
+        if (minimumNumberOfLayers.get(state) == INFEASIBLE || cancellationToken.isCancelled()) {
+            return false;
+        }
+        //per depth, i.e., number of swaps executed: its state and the next position to try
+        long[] stateAt = new long[executionSequence.length + 1];
+        int[] nextPositionAt = new int[executionSequence.length + 1];
+        int depth = 0;
+        stateAt[0] = state;
+        while (true) {
+            int position = nextPositionAt[depth];
+            while (position < numberOfLines - 1 && remaining[getPairAt(position)] == 0) {
+                ++position;
+            }
+            if (position < numberOfLines - 1) {
+                int pair = getPairAt(position);
+                nextPositionAt[depth] = position + 1;
+                execute(position, pair);
+                long nextState = stateAt[depth] - weight[pair];
+                if (nextState == 0) {
+                    return true;
+                }
+                if (minimumNumberOfLayers.get(nextState) == INFEASIBLE || cancellationToken.isCancelled()) {
+                    undo(position, pair);
+                    continue;
+                }
+                ++depth;
+                stateAt[depth] = nextState;
+                nextPositionAt[depth] = 0;
+                continue;
+            }
+            //all swaps tried at this depth
+            if (!cancellationToken.isCancelled()) {
+                minimumNumberOfLayers.put(stateAt[depth], INFEASIBLE);
+            }
+            if (depth == 0) {
+                return false;
+            }
+            --depth;
+            int executedPosition = nextPositionAt[depth] - 1;
+            //the lines at the position are swapped, but they are still the same pair
+            undo(executedPosition, getPairAt(executedPosition));
+        }
+    }
+
+    /**
+     * Memoizes the minimum number of layers for the states on the way, i.e., the minimum over all layers by deciding
+     * for each position from left to right whether the swap there is executed; recursively:
+     * <pre>
+     * minimum(state) = memoized value, or minimumOverLayers(0, state, false)
+     * minimumOverLayers(position, stateAfterLayer, isLayerNonempty) =
+     *     if position is behind the last one: 1 + minimum(stateAfterLayer) if isLayerNonempty, else INFEASIBLE
+     *     else the smaller of minimumOverLayers(position + 1, stateAfterLayer, isLayerNonempty) and, if the swap at
+     *     position is executed, minimumOverLayers(position + 2, stateAfterLayer - its weight, true)
+     * </pre>
+     * A frame of the stack is either one of minimum (position STATE_FRAME) or one of minimumOverLayers.
+     */
+    private int computeMinimumNumberOfLayers(long state) {
+        int top = pushFrame(-1, STATE_FRAME, state, false);
+        //value of the frame popped last
+        int value = 0;
+        while (top >= 0) {
+            int position = framePosition[top];
+            long stateOfFrame = frameState[top];
+            if (position == STATE_FRAME) {
+                if (framePhase[top] == 0) {
+                    if (stateOfFrame == 0) {
+                        value = 0;
+                        --top;
+                        continue;
+                    }
+                    value = minimumNumberOfLayers.get(stateOfFrame);
+                    //the feasibility search only records infeasible states
+                    if (value != StateTable.ABSENT) {
+                        --top;
+                        continue;
+                    }
+                    if (cancellationToken.isCancelled()) {
+                        value = INFEASIBLE;
+                        --top;
+                        continue;
+                    }
+                    framePhase[top] = 1;
+                    top = pushFrame(top, 0, stateOfFrame, false);
+                    continue;
+                }
+                if (!cancellationToken.isCancelled()) {
+                    minimumNumberOfLayers.put(stateOfFrame, value);
+                }
+                --top;
+                continue;
+            }
+            if (position >= numberOfLines - 1) {
+                if (!frameIsLayerNonempty[top]) {
+                    value = INFEASIBLE;
+                    --top;
+                }
+                else if (framePhase[top] == 0) {
+                    framePhase[top] = 1;
+                    top = pushFrame(top, STATE_FRAME, stateOfFrame, false);
+                }
+                else {
+                    value = value == INFEASIBLE ? INFEASIBLE : value + 1;
+                    --top;
+                }
+                continue;
+            }
+            int pair = getPairAt(position);
+            switch (framePhase[top]) {
+                case 0:
+                    framePhase[top] = 1;
+                    top = pushFrame(top, position + 1, stateOfFrame, frameIsLayerNonempty[top]);
+                    break;
+                case 1:
+                    frameBest[top] = value;
+                    if (remaining[pair] > 0) {
+                        execute(position, pair);
+                        framePhase[top] = 2;
+                        top = pushFrame(top, position + 2, stateOfFrame - weight[pair], true);
+                    }
+                    else {
+                        --top;
+                    }
+                    break;
+                default:
+                    undo(position, pair);
+                    value = Math.min(frameBest[top], value);
+                    --top;
+                    break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return index of the new top frame
+     */
+    private int pushFrame(int top, int position, long state, boolean isLayerNonempty) {
+        int frame = top + 1;
+        if (frame == framePosition.length) {
+            int capacity = Math.max(16, 2 * frame);
+            framePosition = Arrays.copyOf(framePosition, capacity);
+            frameState = Arrays.copyOf(frameState, capacity);
+            frameIsLayerNonempty = Arrays.copyOf(frameIsLayerNonempty, capacity);
+            framePhase = Arrays.copyOf(framePhase, capacity);
+            frameBest = Arrays.copyOf(frameBest, capacity);
+        }
+        framePosition[frame] = position;
+        frameState[frame] = state;
+        frameIsLayerNonempty[frame] = isLayerNonempty;
+        framePhase[frame] = 0;
+        return frame;
+    }
+
+    /**
+     * Executes a layer after which numberOfLayers layers are needed (according to the memoized values), trying for
+     * each position from left to right first to execute the swap there and then not to.
+     *
+     * @return true iff such a layer was found; then it is executed
+     */
+    private boolean findLayer(long state, int numberOfLayers) {
+        //per depth: the position decided there, the state after the layer so far, whether it is nonempty, and whether
+        //the swap at the position is tried already (1) or not executed (2)
+        int[] positionAt = new int[numberOfLines + 1];
+        long[] stateAt = new long[numberOfLines + 1];
+        boolean[] isNonemptyAt = new boolean[numberOfLines + 1];
+        int[] phaseAt = new int[numberOfLines + 1];
+        int depth = 0;
+        stateAt[0] = state;
+        while (depth >= 0) {
+            int position = positionAt[depth];
+            if (position >= numberOfLines - 1) {
+                if (isNonemptyAt[depth] && (stateAt[depth] == 0 ? 0 : minimumNumberOfLayers.get(stateAt[depth]))
+                        == numberOfLayers) {
+                    return true;
+                }
+                --depth;
+                continue;
+            }
+            int pair = getPairAt(position);
+            if (phaseAt[depth] == 0) {
+                phaseAt[depth] = 1;
+                if (remaining[pair] > 0) {
+                    execute(position, pair);
+                    positionAt[depth + 1] = position + 2;
+                    stateAt[depth + 1] = stateAt[depth] - weight[pair];
+                    isNonemptyAt[depth + 1] = true;
+                    phaseAt[depth + 1] = 0;
+                    ++depth;
+                    continue;
+                }
+            }
+            else if (phaseAt[depth] == 1) {
+                undo(position, pair);
+            }
+            else {
+                --depth;
+                continue;
+            }
+            //do not execute the swap at position
+            phaseAt[depth] = 2;
+            positionAt[depth + 1] = position + 1;
+            stateAt[depth + 1] = stateAt[depth];
+            isNonemptyAt[depth + 1] = isNonemptyAt[depth];
+            phaseAt[depth + 1] = 0;
+            ++depth;
+        }
+        return false;
+    }
+
+    private int getPairAt(int position) {
+        return swapIndexer.getPairRank(lineAt[position], lineAt[position + 1]);
+    }
+
+    /**
+     * Swaps the lines at position and position + 1 and records the swap.
+     */
+    private void execute(int position, int pair) {
+        int leftLine = lineAt[position];
+        int rightLine = lineAt[position + 1];
+        int numberOfExecutedSwaps = swapIndexer.getNumberOfSwaps(leftLine, rightLine) - remaining[pair];
+        executionSequence[executionSequenceLength++] =
+                swapIndexer.getSwapId(leftLine, rightLine, numberOfExecutedSwaps / 2);
+        --remaining[pair];
+        lineAt[position] = rightLine;
+        lineAt[position + 1] = leftLine;
+    }
+
+    private void undo(int position, int pair) {
+        --executionSequenceLength;
+        ++remaining[pair];
+        int leftLine = lineAt[position + 1];
+        lineAt[position + 1] = lineAt[position];
+        lineAt[position] = leftLine;
+    }
+
+    /**
+     * @return the realization of the execution sequence: each swap depends on the previous swaps of both its lines
+     */
+    private RealizationGraph toRealizationGraph() {
+        int[] lastSwapOfLine = new int[numberOfLines];
+        Arrays.fill(lastSwapOfLine, -1);
+        long[] edges = new long[2 * executionSequenceLength];
+        int numberOfEdges = 0;
+        for (int i = 0; i < executionSequenceLength; i++) {
+            int swap = executionSequence[i];
+            for (int line : new int[]{swapIndexer.getLeftLine(swap), swapIndexer.getRightLine(swap)}) {
+                if (lastSwapOfLine[line] >= 0) {
+                    edges[numberOfEdges++] = RealizationGraph.edgeKey(lastSwapOfLine[line], swap);
+                }
+                lastSwapOfLine[line] = swap;
+            }
+        }
+        return new RealizationGraph(swapIndexer, Arrays.copyOf(executionSequence, executionSequenceLength),
+                Arrays.copyOf(edges, numberOfEdges));
+    }
+
+    /**
+     * Hash table (open addressing) from states to ints.
+     */
+    private static class StateTable {
+
+        static final int ABSENT = -1;
+        private static final long EMPTY = -1;
+
+        private long[] keys = new long[1 << 10];
+        private int[] values = new int[1 << 10];
+        private int size = 0;
+
+        StateTable() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        int get(long state) {
+            int mask = keys.length - 1;
+            for (int slot = hash(state) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == state) {
+                    return values[slot];
+                }
+            }
+            return ABSENT;
+        }
+
+        void put(long state, int value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(state) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != state) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                keys[slot] = state;
+                ++size;
+            }
+            values[slot] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[2 * oldKeys.length];
+            values = new int[2 * oldValues.length];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != EMPTY) {
+                    put(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+
+        private static int hash(long state) {
+            long hash = state * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
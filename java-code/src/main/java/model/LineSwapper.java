@@ -9,18 +9,68 @@ import org.javatuples.Pair;
 import org.javatuples.Triplet;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class LineSwapper {
+    //combining fewer realizations with the next triplet is not split into parallel chunks
+    private static final int MIN_REALIZATIONS_PER_CHUNK = 16;
+
     private int numberOfLines;
     private int[][] inputMatrix;
 
-    private LinkedHashMap<Integer, LinkedList<ArrayList<RealizationGraph>>> allTripletRealizations;
+    //the realizations of each triplet are relabelled lazily from the shared TripletRealizationTemplate
+    private LinkedHashMap<Integer, LinkedList<List<RealizationGraph>>> allTripletRealizations;
+    //the same lists, for each triplet (i, j, k), i < j < k, in lexicographic order
+    private ArrayList<List<RealizationGraph>> tripletRealizationsInLexicographicOrder;
     private int numberOfTriplets;
+    //see getTripletRealizationsInSearchOrder(); like the fields above, kept until the input matrix changes
+    private List<List<RealizationGraph>> tripletRealizationsInSearchOrder;
 
     private Collection<RealizationGraph> allRealizations;
 
+    private SwapIndexer swapIndexer;
+
+    private TripletOrder tripletOrder = TripletOrder.STATIC;
+
+    private Engine engine = Engine.TRIPLET_COMBINATION;
+    private LayeredDynamicProgram layeredDynamicProgram;
+
+    /**
+     * Algorithm computing single realizations.
+     */
+    public enum Engine {
+        /**
+         * combining one realization per triplet (see {@link TripletOrder})
+         */
+        TRIPLET_COMBINATION,
+        /**
+         * dynamic program over the states of the swapping process, layer by layer; fast for few lines with many swaps,
+         * but only applicable if the number of states (product of the numbers of swaps + 1 over all pairs) fits into a
+         * long, otherwise an {@link IllegalArgumentException} is thrown
+         */
+        LAYERED_DYNAMIC_PROGRAM
+    }
+
+    /**
+     * Order in which the search for one realization chooses the triplets.
+     */
+    public enum TripletOrder {
+        /**
+         * non-decreasing in the number of realizations of the triplets, fixed in advance
+         */
+        STATIC,
+        /**
+         * at every step the triplet with the fewest realizations compatible with the realizations chosen so far;
+         * ties are broken in favor of the triplet sharing more swaps with the ones chosen so far
+         */
+        MOST_CONSTRAINED_FIRST
+    }
+
     public LineSwapper(LinkedHashMap<UnorderedSwap, Integer> swap2occurrenceCount, int numberOfLines) {
         this.numberOfLines = numberOfLines;
         setInputMatrix(swap2occurrenceCount, numberOfLines);
@@ -48,6 +98,15 @@ public class LineSwapper {
         setInputMatrix(swap2occurrenceCount, numberOfLines);
     }
 
+    /**
+     * @param inputMatrix
+     *      is taken over
+     */
+    private LineSwapper(int[][] inputMatrix) {
+        this.numberOfLines = inputMatrix.length;
+        this.inputMatrix = inputMatrix;
+    }
+
     public int getNumberOfLines() {
         return numberOfLines;
     }
@@ -72,6 +131,81 @@ public class LineSwapper {
         return inputMatrix;
     }
 
+    /**
+     * @return the dense numbering of the swaps of this instance used by the vertices of its {@link RealizationGraph}s
+     */
+    public SwapIndexer getSwapIndexer() {
+        if (swapIndexer == null) {
+            swapIndexer = new SwapIndexer(inputMatrix);
+        }
+        return swapIndexer;
+    }
+
+    public TripletOrder getTripletOrder() {
+        return tripletOrder;
+    }
+
+    public void setTripletOrder(TripletOrder tripletOrder) {
+        this.tripletOrder = tripletOrder;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Selects the algorithm of {@link #computeOneRealization(int)} and {@link #computeOneMinHeightRealization()};
+     * {@link #computeAllRealizations()} always combines triplet realizations.
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    private LayeredDynamicProgram getLayeredDynamicProgram() {
+        if (layeredDynamicProgram == null) {
+            layeredDynamicProgram = new LayeredDynamicProgram(getSwapIndexer());
+        }
+        return layeredDynamicProgram;
+    }
+
+    /**
+     * Mirroring an instance (line i becomes line n-1-i) gives an equivalent instance whose swapping diagrams are the
+     * mirror images of the ones of this instance.
+     *
+     * @return the representative of this instance and its mirror image: the one whose upper triangle of the
+     * (absolute) input matrix is lexicographically smaller, read row by row
+     */
+    public LineSwapper getCanonicalForm() {
+        boolean mirrored = isCanonicalFormMirrored();
+        int[][] canonicalMatrix = new int[numberOfLines][numberOfLines];
+        for (int i = 0; i < numberOfLines - 1; i++) {
+            for (int j = i + 1; j < numberOfLines; j++) {
+                int numberOfSwaps = mirrored ? Math.abs(inputMatrix[numberOfLines - 1 - j][numberOfLines - 1 - i]) :
+                        Math.abs(inputMatrix[i][j]);
+                canonicalMatrix[i][j] = numberOfSwaps;
+                canonicalMatrix[j][i] = numberOfSwaps;
+            }
+        }
+        return new LineSwapper(canonicalMatrix);
+    }
+
+    /**
+     * @return true iff {@link #getCanonicalForm()} is the mirror image of this instance (and not just this instance)
+     */
+    public boolean isCanonicalFormMirrored() {
+        for (int i = 0; i < numberOfLines - 1; i++) {
+            for (int j = i + 1; j < numberOfLines; j++) {
+                //use only absolute values for the matrices
+                int original = Math.abs(inputMatrix[i][j]);
+                int mirrored = Math.abs(inputMatrix[numberOfLines - 1 - j][numberOfLines - 1 - i]);
+                if (original != mirrored) {
+                    return mirrored < original;
+                }
+            }
+        }
+        return false;
+    }
+
     public String getInputMatrixAsString() {
         String string = "[";
         boolean outerCommaNeeded = false;
@@ -101,6 +235,15 @@ public class LineSwapper {
                 this.inputMatrix[i][j] = inputMatrix[i][j];
             }
         }
+        this.numberOfLines = inputMatrix.length;
+        //everything computed for the old input matrix is invalid now
+        this.swapIndexer = null;
+        this.layeredDynamicProgram = null;
+        this.allTripletRealizations = null;
+        this.tripletRealizationsInLexicographicOrder = null;
+        this.numberOfTriplets = 0;
+        this.tripletRealizationsInSearchOrder = null;
+        this.allRealizations = null;
     }
 
     public List<Line> getFinalPermutation() {
@@ -133,20 +276,25 @@ public class LineSwapper {
      * @return null if no realization exists
      */
     public RealizationGraph computeOneMinHeightRealization() {
-        int currentMinHeight = Integer.MAX_VALUE;
-        RealizationGraph currentMinHeightRealization = null;
+        return computeOneMinHeightRealization(CancellationToken.NEVER).getResult();
+    }
 
-        while (true) {
-            RealizationGraph intermediateOutput = computeOneRealization(currentMinHeight -
-                    (currentMinHeight == Integer.MAX_VALUE ? 0 : 1));
-            if (intermediateOutput == null) {
-                break;
-            }
-            currentMinHeightRealization = intermediateOutput;
-            currentMinHeight = currentMinHeightRealization.getHeight(this);
+    /**
+     * Like {@link #computeOneMinHeightRealization()}, but gives up as soon as cancellationToken is cancelled.
+     * The result is then the realization of minimum height found so far
+     * (none for {@link Engine#LAYERED_DYNAMIC_PROGRAM}).
+     */
+    public SolveOutcome<RealizationGraph> computeOneMinHeightRealization(CancellationToken cancellationToken) {
+        List<int[]> blocks = getIndependentBlocks();
+        if (isDecomposable(blocks)) {
+            return computeBlockwise(blocks, Integer.MAX_VALUE,
+                    lineSwapper -> lineSwapper.computeOneMinHeightRealization(cancellationToken));
         }
-
-        return currentMinHeightRealization;
+        if (engine == Engine.LAYERED_DYNAMIC_PROGRAM) {
+            return getLayeredDynamicProgram().computeOneMinHeightRealization(Integer.MAX_VALUE, cancellationToken);
+        }
+        return new RealizationSearch(getSwapIndexer(), getTripletRealizationsInSearchOrder(cancellationToken),
+                tripletOrder, cancellationToken).computeOneMinHeightRealization();
     }
 
     /**
@@ -162,130 +310,402 @@ public class LineSwapper {
      * @return null if no realization exists
      */
     public RealizationGraph computeOneRealization(int maxHeight) {
+        return computeOneRealization(maxHeight, CancellationToken.NEVER).getResult();
+    }
+
+    /**
+     * Like {@link #computeOneRealization(int)}, but gives up as soon as cancellationToken is cancelled.
+     */
+    public SolveOutcome<RealizationGraph> computeOneRealization(int maxHeight, CancellationToken cancellationToken) {
         if (maxHeight < 0) {
-            return null;
+            return SolveOutcome.infeasible();
+        }
+        List<int[]> blocks = getIndependentBlocks();
+        if (isDecomposable(blocks)) {
+            return computeBlockwise(blocks, maxHeight,
+                    lineSwapper -> lineSwapper.computeOneRealization(maxHeight, cancellationToken));
+        }
+        if (engine == Engine.LAYERED_DYNAMIC_PROGRAM) {
+            return maxHeight == Integer.MAX_VALUE ?
+                    getLayeredDynamicProgram().computeOneRealization(cancellationToken) :
+                    getLayeredDynamicProgram().computeOneMinHeightRealization(maxHeight, cancellationToken);
         }
 
-        computeAllTripletRealizations();
-
-        //preparing
-        /*
-         * List with two indices: one entry per triplet in order non-decreasing in the number of realizations
-         * The first value of the pair is the currently tested realization in the collection of realizations of this triplet
-         * The second value of the pair is the list of realizations of this triplet
-         * (from model.LineSwapper#allTripletRealizations)
-         *
-         * This is done because the computeOneRealization works as follows:
-         * Try to combine the triplets in one way, if it fails, take from the triplet-realizations-collections the next one
-         * and try to combine.
-         * If successful add the next triplet and so on.
-         */
-        ArrayList<Pair<Integer, List<RealizationGraph>>> currentlyTried = new ArrayList<>(numberOfTriplets);
+        return new RealizationSearch(getSwapIndexer(), getTripletRealizationsInSearchOrder(cancellationToken),
+                tripletOrder, cancellationToken).computeOneRealization(maxHeight);
+    }
 
-        for (int numberOfRealizations : allTripletRealizations.keySet().stream().sorted().collect(Collectors.toList())) {
-            for (ArrayList<RealizationGraph> collectionForOneTriplet :
-                    allTripletRealizations.get(numberOfRealizations)) {
-                currentlyTried.add(new Pair<>(0, collectionForOneTriplet));
+    /**
+     * Lines connected by swaps (directly or via other lines) form a block.
+     * Swaps of different blocks never share a triplet with swaps of both, so the blocks can be realized independently.
+     *
+     * @return the blocks with at least one swap, each as its lines in increasing order
+     */
+    public List<int[]> getIndependentBlocks() {
+        //union-find over the lines
+        int[] parent = IntStream.range(0, numberOfLines).toArray();
+        for (int i = 0; i < numberOfLines - 1; i++) {
+            for (int j = i + 1; j < numberOfLines; j++) {
+                if (inputMatrix[i][j] != 0) {
+                    parent[findBlockRepresentative(parent, i)] = findBlockRepresentative(parent, j);
+                }
             }
         }
-
-        //trying to combine triplets, maintain only one acyclic realization which is built up
-        RealizationGraph realization = new RealizationGraph();
-        int tripletNumberToBeAdded = 0;
-        while (tripletNumberToBeAdded < numberOfTriplets) {
-            Pair<Integer, List<RealizationGraph>> tripletEntry = currentlyTried.get(tripletNumberToBeAdded);
-            int numberInRealizationCollection = tripletEntry.getValue0();
-            List<RealizationGraph> allTripletRealizations = tripletEntry.getValue1();
-            if (allTripletRealizations.isEmpty()) {
-                //not even for that triplet there is a realization
-                return null;
+        LinkedHashMap<Integer, List<Integer>> representative2lines = new LinkedHashMap<>();
+        for (int i = 0; i < numberOfLines; i++) {
+            representative2lines.computeIfAbsent(findBlockRepresentative(parent, i), key -> new ArrayList<>()).add(i);
+        }
+        List<int[]> blocks = new ArrayList<>();
+        for (List<Integer> lines : representative2lines.values()) {
+            if (lines.size() > 1) {
+                blocks.add(lines.stream().mapToInt(Integer::intValue).toArray());
             }
-            RealizationGraph tripletRealization = allTripletRealizations.get(numberInRealizationCollection);
-            RealizationGraph possibleRealization = combineDependencies(realization, tripletRealization);
-            //success
-            if (possibleRealization != null && !CycleFinder.containsCycle(possibleRealization)
-                    && (maxHeight == Integer.MAX_VALUE || possibleRealization.getHeight(this) <= maxHeight)) {
-                //try first and remove it from the list of "open" realizations in the stack
-//                WeakComponentClusterer<Pair<OrderedSwap, Integer>, Integer> wcc = new WeakComponentClusterer<>();
-//                Set<Set<Pair<OrderedSwap, Integer>>> components = wcc.apply(possibleRealization);
-//                int numberOfComponents = components.size();
-                realization = possibleRealization;
-                ++tripletNumberToBeAdded;
-            }
-            //fail
-            else{
-                boolean recompute = false;
-                //backtrack triplet entries
-                Pair<Integer, List<RealizationGraph>> currentTripletEntry = tripletEntry;
-                while (true) {
-
-                    //all realizations of this triplet already tested -> go to prev and try another realization
-                    if (currentTripletEntry.getValue0() ==
-                            currentTripletEntry.getValue1().size() - 1) {
-                        currentlyTried.set(tripletNumberToBeAdded,
-                                new Pair<>(0, currentTripletEntry.getValue1()));
-                        --tripletNumberToBeAdded;
-                        //total fail -> no realization
-                        if (tripletNumberToBeAdded < 0) {
-                            return null;
-                        }
-                        currentTripletEntry = currentlyTried.get(tripletNumberToBeAdded);
-                        recompute = true;
-                    }
-                    //not all realizations of this triplet already tested
-                    else {
-                        currentlyTried.set(tripletNumberToBeAdded,
-                                new Pair<>(currentTripletEntry.getValue0() + 1,
-                                        currentTripletEntry.getValue1()));
-                        if (recompute) {
-                            realization = new RealizationGraph();
-                            tripletNumberToBeAdded = 0;
-                        }
-                        break;
+        }
+        return blocks;
+    }
+
+    private static int findBlockRepresentative(int[] parent, int line) {
+        while (parent[line] != line) {
+            parent[line] = parent[parent[line]];
+            line = parent[line];
+        }
+        return line;
+    }
+
+    /**
+     * @return true iff the instance consists of several blocks or not all lines are in the only block
+     */
+    private boolean isDecomposable(List<int[]> blocks) {
+        return blocks.size() > 1 || (blocks.size() == 1 && blocks.get(0).length < numberOfLines);
+    }
+
+    /**
+     * A line between two lines of a swap has to leave, which is impossible if it is in another block.
+     *
+     * @return false if some swap has a line of another block between its lines; then there is no realization
+     */
+    private boolean areBlocksSeparable(List<int[]> blocks) {
+        for (int[] block : blocks) {
+            for (int a = 0; a < block.length - 1; a++) {
+                for (int b = a + 1; b < block.length; b++) {
+                    if (inputMatrix[block[a]][block[b]] != 0 && block[b] - block[a] != b - a) {
+                        return false;
                     }
                 }
             }
         }
+        return true;
+    }
 
-        return realization;
+    /**
+     * Solves every block as an instance of its own (in parallel) and combines their realizations.
+     * A block of two lines just executes its swaps one after another.
+     *
+     * @return infeasible if some block has no realization (of height at most maxHeight); if some block timed out,
+     * the combination of the best realizations of the blocks, if each block has one
+     */
+    private SolveOutcome<RealizationGraph> computeBlockwise(
+            List<int[]> blocks, int maxHeight, Function<LineSwapper, SolveOutcome<RealizationGraph>> solver) {
+        if (!areBlocksSeparable(blocks)) {
+            return SolveOutcome.infeasible();
+        }
+
+        List<SolveOutcome<RealizationGraph>> blockOutcomes = blocks.parallelStream().map(block -> {
+            if (block.length == 2) {
+                int numberOfSwaps = getSwapIndexer().getNumberOfSwaps(block[0], block[1]);
+                if (numberOfSwaps > maxHeight) {
+                    return SolveOutcome.<RealizationGraph>infeasible();
+                }
+                int[] executionSequence = new int[numberOfSwaps];
+                for (int t = 0; t < numberOfSwaps; t++) {
+                    executionSequence[t] = t % 2 == 0 ? getSwapIndexer().getSwapId(block[0], block[1], t / 2) :
+                            getSwapIndexer().getSwapId(block[1], block[0], t / 2);
+                }
+                return SolveOutcome.solved(RealizationGraph.ofExecutionSequence(getSwapIndexer(), executionSequence));
+            }
+            SolveOutcome<RealizationGraph> outcome = solver.apply(getSubinstance(block));
+            return outcome.getResult() == null ? outcome :
+                    new SolveOutcome<>(outcome.getStatus(), toRealizationOfThisInstance(outcome.getResult(), block));
+        }).collect(Collectors.toList());
+
+        boolean timedOut = false;
+        for (SolveOutcome<RealizationGraph> blockOutcome : blockOutcomes) {
+            if (blockOutcome.isInfeasible()) {
+                return SolveOutcome.infeasible();
+            }
+            timedOut |= blockOutcome.isTimedOut();
+        }
+        //the blocks have no swaps in common, so the union of their realizations is acyclic
+        List<RealizationGraph> blockRealizations = new ArrayList<>(blockOutcomes.size());
+        int numberOfVertices = 0;
+        int numberOfEdges = 0;
+        for (SolveOutcome<RealizationGraph> blockOutcome : blockOutcomes) {
+            RealizationGraph blockRealization = blockOutcome.getResult();
+            if (blockRealization == null) {
+                return SolveOutcome.timedOut(null);
+            }
+            blockRealizations.add(blockRealization);
+            numberOfVertices += blockRealization.getVertexCount();
+            numberOfEdges += blockRealization.getEdgeCount();
+        }
+        int[] vertices = new int[numberOfVertices];
+        long[] edges = new long[numberOfEdges];
+        numberOfVertices = 0;
+        numberOfEdges = 0;
+        for (RealizationGraph blockRealization : blockRealizations) {
+            int[] vertexIds = blockRealization.getVertexIds();
+            System.arraycopy(vertexIds, 0, vertices, numberOfVertices, vertexIds.length);
+            numberOfVertices += vertexIds.length;
+            long[] edgeKeys = blockRealization.getEdgeKeys();
+            System.arraycopy(edgeKeys, 0, edges, numberOfEdges, edgeKeys.length);
+            numberOfEdges += edgeKeys.length;
+        }
+        RealizationGraph realization = new RealizationGraph(getSwapIndexer(), vertices, edges);
+        return timedOut ? SolveOutcome.timedOut(realization) : SolveOutcome.solved(realization);
+    }
+
+    /**
+     * @return the instance on the lines of block (renumbered in increasing order) with the same settings
+     */
+    private LineSwapper getSubinstance(int[] block) {
+        int[][] subMatrix = new int[block.length][block.length];
+        for (int i = 0; i < block.length; i++) {
+            for (int j = 0; j < block.length; j++) {
+                subMatrix[i][j] = inputMatrix[block[i]][block[j]];
+            }
+        }
+        LineSwapper subinstance = new LineSwapper(subMatrix);
+        subinstance.setEngine(engine);
+        subinstance.setTripletOrder(tripletOrder);
+        return subinstance;
+    }
+
+    /**
+     * @param block
+     *      lines of this instance that are the lines 0, 1, ... of the instance of realization
+     */
+    private RealizationGraph toRealizationOfThisInstance(RealizationGraph realization, int[] block) {
+        SwapIndexer blockSwapIndexer = realization.getSwapIndexer();
+        int[] vertexIds = realization.getVertexIds();
+        int[] vertices = new int[vertexIds.length];
+        for (int i = 0; i < vertexIds.length; i++) {
+            vertices[i] = toSwapIdOfThisInstance(vertexIds[i], blockSwapIndexer, block);
+        }
+        long[] edgeKeys = realization.getEdgeKeys();
+        long[] edges = new long[edgeKeys.length];
+        for (int i = 0; i < edgeKeys.length; i++) {
+            edges[i] = RealizationGraph.edgeKey(
+                    toSwapIdOfThisInstance(RealizationGraph.edgeSource(edgeKeys[i]), blockSwapIndexer, block),
+                    toSwapIdOfThisInstance(RealizationGraph.edgeTarget(edgeKeys[i]), blockSwapIndexer, block));
+        }
+        return new RealizationGraph(getSwapIndexer(), vertices, edges);
+    }
+
+    private int toSwapIdOfThisInstance(int swapId, SwapIndexer blockSwapIndexer, int[] block) {
+        return getSwapIndexer().getSwapId(block[blockSwapIndexer.getLeftLine(swapId)],
+                block[blockSwapIndexer.getRightLine(swapId)], blockSwapIndexer.getOccurrence(swapId));
+    }
+
+    /**
+     *
+     * @param parallelism
+     *      number of threads searching in parallel
+     * @return null if no realization exists
+     */
+    public RealizationGraph computeOneRealizationInParallel(int parallelism) {
+        return computeOneRealizationInParallel(Integer.MAX_VALUE, parallelism);
+    }
+
+    /**
+     * Like {@link #computeOneRealization(int)}, but different parts of the search tree are searched in parallel.
+     * If there are several realizations, it is not determined which one is returned.
+     * The {@link Engine#LAYERED_DYNAMIC_PROGRAM} runs sequentially.
+     *
+     * @param parallelism
+     *      number of threads searching in parallel
+     * @return null if no realization exists
+     */
+    public RealizationGraph computeOneRealizationInParallel(int maxHeight, int parallelism) {
+        return computeOneRealizationInParallel(maxHeight, parallelism, CancellationToken.NEVER).getResult();
+    }
+
+    /**
+     * Like {@link #computeOneRealizationInParallel(int, int)}, but gives up as soon as cancellationToken is cancelled.
+     */
+    public SolveOutcome<RealizationGraph> computeOneRealizationInParallel(int maxHeight, int parallelism,
+                                                                          CancellationToken cancellationToken) {
+        return computeOneRealizationInParallel(maxHeight, RealizationSearch.getSharedPool(parallelism),
+                cancellationToken);
+    }
+
+    /**
+     * Like {@link #computeOneRealizationInParallel(int, int, CancellationToken)}, but the search runs in the given
+     * pool, with its parallelism.
+     */
+    public SolveOutcome<RealizationGraph> computeOneRealizationInParallel(int maxHeight, ForkJoinPool pool,
+                                                                          CancellationToken cancellationToken) {
+        if (maxHeight < 0) {
+            return SolveOutcome.infeasible();
+        }
+        if (engine == Engine.LAYERED_DYNAMIC_PROGRAM) {
+            return computeOneRealization(maxHeight, cancellationToken);
+        }
+
+        return new RealizationSearch(getSwapIndexer(), getTripletRealizationsInSearchOrder(cancellationToken),
+                tripletOrder, cancellationToken).computeOneRealizationInParallel(maxHeight, pool);
+    }
+
+    /**
+     * @return one entry per triplet in order non-decreasing in the number of realizations
+     * (from model.LineSwapper#allTripletRealizations), without the realizations removed by
+     * {@link TripletArcConsistency}; an empty entry means that there is no realization.
+     * It is computed once for the current input matrix (unless cancellationToken interrupts the filtering).
+     */
+    private List<List<RealizationGraph>> getTripletRealizationsInSearchOrder(CancellationToken cancellationToken) {
+        if (tripletRealizationsInSearchOrder != null) {
+            return tripletRealizationsInSearchOrder;
+        }
+        computeAllTripletRealizations();
+
+        List<List<RealizationGraph>> tripletRealizations = new ArrayList<>(
+                new TripletArcConsistency(numberOfLines, getSwapIndexer(), tripletRealizationsInLexicographicOrder)
+                        .filter(cancellationToken));
+        //stable, i.e., ties stay in lexicographic order
+        tripletRealizations.sort(Comparator.comparingInt(List::size));
+        tripletRealizations = Collections.unmodifiableList(tripletRealizations);
+        //a filtering stopped early removed fewer realizations than possible
+        if (!cancellationToken.isCancelled()) {
+            tripletRealizationsInSearchOrder = tripletRealizations;
+        }
+        return tripletRealizations;
     }
 
     public Collection<RealizationGraph> computeAllRealizations() {
+        computeAllRealizations(CancellationToken.NEVER);
+        return allRealizations;
+    }
+
+    /**
+     * Like {@link #computeAllRealizations()}, but gives up as soon as cancellationToken is cancelled.
+     * The combinations found until then are not realizations of the whole instance, so a timed out outcome has no
+     * result.
+     *
+     * @return infeasible if there is no realization
+     */
+    public SolveOutcome<Collection<RealizationGraph>> computeAllRealizations(CancellationToken cancellationToken) {
         if (allRealizations == null) {
             //start with the triplets
             computeAllTripletRealizations();
             //now combine them beginning with the ones with only few realizations
-            allRealizations = new LinkedList<>();
-            allRealizations.add(new RealizationGraph());
+            Collection<RealizationGraph> combinedRealizations = new LinkedList<>();
+            combinedRealizations.add(new RealizationGraph(getSwapIndexer()));
             for (int numberOfRealizations : allTripletRealizations.keySet().stream().sorted().collect(Collectors.toList())) {
                 for (Collection<RealizationGraph> tripletRealizations : allTripletRealizations.get(numberOfRealizations)) {
-                    allRealizations = computeAllRealizations(allRealizations, tripletRealizations);
+                    //relabelled once here, they are combined with every realization so far
+                    combinedRealizations = computeAllRealizations(combinedRealizations,
+                            new ArrayList<>(tripletRealizations), cancellationToken);
+                    if (cancellationToken.isCancelled()) {
+                        return SolveOutcome.timedOut(null);
+                    }
 //                System.out.println("Added Triplet with "+numberOfRealizations+" realizations: " +
 //                        "Currently "+allRealizations.size()+" realizations.");
                 }
             }
             SwapTripletRegistry.getRealizations(0, 0, 0);
+            allRealizations = combinedRealizations;
         }
-        return allRealizations;
+        return allRealizations.isEmpty() ? SolveOutcome.infeasible() : SolveOutcome.solved(allRealizations);
     }
 
+    /**
+     * Like {@link #computeAllRealizations()}, but each realization is computed only when the iteration gets to it, so
+     * just the current one is kept in memory and stopping early saves the rest of the work.
+     * The realizations may come in a different order.
+     */
+    public Iterator<RealizationGraph> iterateAllRealizations() {
+        return new RealizationIterator(getSwapIndexer(), getTripletRealizationsInSearchOrder(CancellationToken.NEVER));
+    }
+
+    /**
+     * @return sequential stream of {@link #iterateAllRealizations()}, e.g., for limit(n) or count()
+     */
+    public Stream<RealizationGraph> streamAllRealizations() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterateAllRealizations(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Number of realizations, i.e., the size of {@link #computeAllRealizations()}, without building them.
+     * The memory needed is bounded by the number of triplets.
+     */
+    public long countAllRealizations() {
+        SolveOutcome<Long> outcome = countAllRealizations(CancellationToken.NEVER);
+        return outcome.isInfeasible() ? 0 : outcome.getResult();
+    }
+
+    /**
+     * Like {@link #countAllRealizations()}, but gives up as soon as cancellationToken is cancelled; the result is then
+     * the number of realizations counted so far.
+     * The realizations of independent blocks (see {@link #getIndependentBlocks()}) are counted separately and
+     * multiplied; if this is cancelled, the result is the product of the counts of the blocks finished so far and the
+     * count so far of the interrupted block, the blocks behind it are not taken into account.
+     *
+     * @return infeasible if there is no realization
+     */
+    public SolveOutcome<Long> countAllRealizations(CancellationToken cancellationToken) {
+        long count;
+        List<int[]> blocks = getIndependentBlocks();
+        if (isDecomposable(blocks)) {
+            if (!areBlocksSeparable(blocks)) {
+                return SolveOutcome.infeasible();
+            }
+            count = 1;
+            for (int[] block : blocks) {
+                //a block of two lines has only one realization
+                if (block.length > 2) {
+                    SolveOutcome<Long> blockOutcome = getSubinstance(block).countAllRealizations(cancellationToken);
+                    if (blockOutcome.isInfeasible()) {
+                        return blockOutcome;
+                    }
+                    if (blockOutcome.isTimedOut()) {
+                        return SolveOutcome.timedOut(Math.multiplyExact(count, blockOutcome.getResult()));
+                    }
+                    count = Math.multiplyExact(count, blockOutcome.getResult());
+                }
+            }
+        }
+        else {
+            count = new RealizationIterator(getSwapIndexer(), getTripletRealizationsInSearchOrder(cancellationToken))
+                    .countRemaining(cancellationToken);
+        }
+        if (cancellationToken.isCancelled()) {
+            return SolveOutcome.timedOut(count);
+        }
+        return count == 0 ? SolveOutcome.infeasible() : SolveOutcome.solved(count);
+    }
+
+    /**
+     * Does nothing if the triplet realizations of the current input matrix are already there.
+     */
     private void computeAllTripletRealizations() {
+        if (tripletRealizationsInLexicographicOrder != null) {
+            return;
+        }
         allTripletRealizations = new LinkedHashMap<>();
+        tripletRealizationsInLexicographicOrder = new ArrayList<>();
         numberOfTriplets = 0;
         for (int i = 0; i < numberOfLines - 2; ++i) {
-            Line lineI = new Line(i);
             for (int j = i + 1; j < numberOfLines - 1; ++j) {
-                Line lineJ = new Line(j);
                 for (int k = j + 1; k < numberOfLines; ++k) {
-                    Line lineK = new Line(k);
                     //use only absolute values for the matrices
-                    LineTriplet triplet = new LineTriplet(lineI, lineJ, lineK,
-                            Math.abs(inputMatrix[i][j]), Math.abs(inputMatrix[i][k]), Math.abs(inputMatrix[j][k]));
-                    ArrayList<RealizationGraph> executionSequences = computeAllRealizations(triplet);
+                    List<RealizationGraph> executionSequences = TripletRealizationTemplate.of(
+                            Math.abs(inputMatrix[i][j]), Math.abs(inputMatrix[i][k]), Math.abs(inputMatrix[j][k]))
+                            .forTriplet(getSwapIndexer(), i, j, k);
                     if (!allTripletRealizations.containsKey(executionSequences.size())) {
                         allTripletRealizations.put(executionSequences.size(), new LinkedList<>());
                     }
                     allTripletRealizations.get(executionSequences.size()).add(executionSequences);
+                    tripletRealizationsInLexicographicOrder.add(executionSequences);
                     ++numberOfTriplets;
 //                    System.out.println("Computed Triplet("+i+", "+j+", "+k+"): Found "+executionSequences.size()+" realizations.");
                 }
@@ -293,147 +713,88 @@ public class LineSwapper {
         }
     }
 
+    /**
+     * Stops early (with an incomplete result) if cancellationToken is cancelled.
+     */
     private Collection<RealizationGraph> computeAllRealizations(
             Collection<RealizationGraph> dependencyGraphs0,
-            Collection<RealizationGraph> dependencyGraphs1) {
+            Collection<RealizationGraph> dependencyGraphs1,
+            CancellationToken cancellationToken) {
         //compute all combinations
+        //dependencyGraphs0 is split into chunks that are combined with dependencyGraphs1 in parallel
+        List<RealizationGraph> graphs0 = new ArrayList<>(dependencyGraphs0);
+        int numberOfChunks = Math.max(1, Math.min(4 * ForkJoinPool.getCommonPoolParallelism(),
+                graphs0.size() / MIN_REALIZATIONS_PER_CHUNK));
+        List<List<RealizationGraph>> combinationsOfChunks = IntStream.range(0, numberOfChunks).parallel()
+                .mapToObj(chunk -> computeAllCombinations(
+                        graphs0.subList(chunk * graphs0.size() / numberOfChunks,
+                                (chunk + 1) * graphs0.size() / numberOfChunks),
+                        dependencyGraphs1, cancellationToken))
+                .collect(Collectors.toList());
+
+        //concatenate in the order of the chunks (as if sequential),
+        //duplicates are found by their fingerprints, see RealizationGraph.Key
         LinkedList<RealizationGraph> allCombinations = new LinkedList<>();
-        for (RealizationGraph graph0realization : dependencyGraphs0) {
-            for (RealizationGraph graph1realization : dependencyGraphs1) {
-                RealizationGraph combinedDependencies =
-                        combineDependencies(graph0realization, graph1realization);
-                if (!containsThisGraph(allCombinations, combinedDependencies)) {
+        HashSet<RealizationGraph.Key> distinctCombinations = new HashSet<>();
+        for (List<RealizationGraph> combinationsOfChunk : combinationsOfChunks) {
+            for (RealizationGraph combinedDependencies : combinationsOfChunk) {
+                if (distinctCombinations.add(new RealizationGraph.Key(combinedDependencies))) {
                     allCombinations.add(combinedDependencies);
                 }
             }
         }
-        //filter the non-realizable combinations out, i.e. the realizations with cycles
-        for (RealizationGraph combination : new LinkedList<>(allCombinations)) {
-            if (CycleFinder.containsCycle(combination)) {
-                allCombinations.remove(combination);
-//                System.out.println("Found cycle! (#vertices = "+combination.getVertexCount()+")");
-//            }
-//            else {
-//               System.out.println("Found cycle-free combination! (#vertices = "+combination.getVertexCount()+")");
-            }
-        }
-
         return allCombinations;
     }
-    private boolean containsThisGraph(Collection<RealizationGraph> collection,
-                                      RealizationGraph graph) {
-        for (RealizationGraph collectionGraph : collection) {
-            boolean isIdentical = true;
-            if (collectionGraph.getVertexCount() != graph.getVertexCount()
-                    || collectionGraph.getEdgeCount() != graph.getEdgeCount()) {
-                //isIdentical = false;
+
+    /**
+     * Both realizations are applied in place to one graph and rolled back afterwards, combinations with cycles are
+     * rejected while applying, so only the realizable combinations are copied.
+     * Runs on one chunk of a parallel combination, with a graph of its own.
+     */
+    private List<RealizationGraph> computeAllCombinations(
+            List<RealizationGraph> dependencyGraphs0,
+            Collection<RealizationGraph> dependencyGraphs1,
+            CancellationToken cancellationToken) {
+        ArrayList<RealizationGraph> allCombinations = new ArrayList<>();
+        PartialRealization combination = new PartialRealization(getSwapIndexer());
+        for (RealizationGraph graph0realization : dependencyGraphs0) {
+            if (cancellationToken.isCancelled()) {
+                break;
+            }
+            if (!combineDependencies(combination, graph0realization)) {
                 continue;
             }
-            for (Pair<OrderedSwap, Integer> v : collectionGraph.getVertices()) {
-                if (!graph.containsVertex(v)) {
-                    isIdentical = false;
-                    break;
-                }
-                if (collectionGraph.getSuccessorCount(v) != graph.getSuccessorCount(v)) {
-                    isIdentical = false;
-                    break;
-                }
-                for (Pair<OrderedSwap, Integer> successor : collectionGraph.getSuccessors(v)) {
-                    if (!graph.getSuccessors(v).contains(successor)){
-                        isIdentical = false;
-                        break;
-                    }
-                }
-                if (!isIdentical) {
-                    break;
+            for (RealizationGraph graph1realization : dependencyGraphs1) {
+                if (combineDependencies(combination, graph1realization)) {
+                    RealizationGraph combinedDependencies = combination.toRealizationGraph();
+                    //hash here, in parallel
+                    combinedDependencies.getFingerprintHigh();
+                    allCombinations.add(combinedDependencies);
+                    rollbackDependencies(combination);
                 }
             }
-            if (isIdentical) {
-                return true;
-            }
+            rollbackDependencies(combination);
         }
-        return false;
+        return allCombinations;
     }
 
-    private RealizationGraph combineDependencies(
-            RealizationGraph graph0,
+    /**
+     * Applies graph1 in place to graph0 as a new level, unless this closes a cycle.
+     * Undo it with {@link #rollbackDependencies(PartialRealization)}.
+     *
+     * @return false if graph1 would close a cycle (then graph0 is unchanged)
+     */
+    private static boolean combineDependencies(
+            PartialRealization graph0,
             RealizationGraph graph1) {
-        RealizationGraph combinationGraph = new RealizationGraph();
-        //add all vertices
-        for (Pair<OrderedSwap, Integer> swap : graph0.getVertices()) {
-            combinationGraph.addVertex(swap);
-        }
-        for (Pair<OrderedSwap, Integer> swap : graph1.getVertices()) {
-            if (!combinationGraph.containsVertex(swap)) {
-                combinationGraph.addVertex(swap);
-            }
-        }
-        //add edges
-        int edgeCounter = 0;
-        for (Integer e : graph0.getEdges()) {
-            Pair<OrderedSwap, Integer> source = graph0.getSource(e);
-            Pair<OrderedSwap, Integer> target = graph0.getDest(e);
-            if (!combinationGraph.isPredecessor(source, target)) {
-                combinationGraph.addEdge(edgeCounter++, source, target);
-            }
-        }
-        for (Integer e : graph1.getEdges()) {
-            Pair<OrderedSwap, Integer> source = graph1.getSource(e);
-            Pair<OrderedSwap, Integer> target = graph1.getDest(e);
-            if (!combinationGraph.isPredecessor(source, target)) {
-                combinationGraph.addEdge(edgeCounter++, source, target);
-            }
-        }
-        return combinationGraph;
-    }
-
-    private static ArrayList<RealizationGraph> computeAllRealizations(LineTriplet triplet) {
-        Collection<List<SwapTripletRegistry.TripletSwap>> generalRealizations = SwapTripletRegistry.getRealizations(
-                triplet.getNumberOf01Swaps(), triplet.getNumberOf02Swaps(), triplet.getNumberOf12Swaps());
-        ArrayList<RealizationGraph> concreteRealizations =
-                new ArrayList<>(generalRealizations.size());
-        for (List<SwapTripletRegistry.TripletSwap> realization : generalRealizations) {
-            RealizationGraph executionSequence = new RealizationGraph();
-            int edgeCounter = 0;
-            int swapCounter01 = 0;
-            int swapCounter02 = 0;
-            int swapCounter12 = 0;
-            int swapCounter10 = 0;
-            int swapCounter20 = 0;
-            int swapCounter21 = 0;
-            Pair<OrderedSwap, Integer> prevSwap = null;
-            for (SwapTripletRegistry.TripletSwap tripletSwap : realization) {
-                Pair<OrderedSwap, Integer> swap = null;
-                switch (tripletSwap) {
-                    case SWAP_01:
-                        swap = new Pair<>(new OrderedSwap(triplet.getValue0(), triplet.getValue1()), swapCounter01++);
-                        break;
-                    case SWAP_10:
-                        swap = new Pair<>(new OrderedSwap(triplet.getValue1(), triplet.getValue0()), swapCounter10++);
-                        break;
-                    case SWAP_02:
-                        swap = new Pair<>(new OrderedSwap(triplet.getValue0(), triplet.getValue2()), swapCounter02++);
-                        break;
-                    case SWAP_20:
-                        swap = new Pair<>(new OrderedSwap(triplet.getValue2(), triplet.getValue0()), swapCounter20++);
-                        break;
-                    case SWAP_12:
-                        swap = new Pair<>(new OrderedSwap(triplet.getValue1(), triplet.getValue2()), swapCounter12++);
-                        break;
-                    case SWAP_21:
-                        swap = new Pair<>(new OrderedSwap(triplet.getValue2(), triplet.getValue1()), swapCounter21++);
-                        break;
-                }
-                executionSequence.addVertex(swap);
-                if (prevSwap != null) {
-                    executionSequence.addEdge(edgeCounter++, prevSwap, swap);
-                }
-                prevSwap = swap;
-            }
-            concreteRealizations.add(executionSequence);
-        }
+        return graph0.push(graph1);
+    }
 
-        return concreteRealizations;
+    /**
+     * Takes back the most recent successful {@link #combineDependencies(PartialRealization, RealizationGraph)}.
+     */
+    private static void rollbackDependencies(PartialRealization graph0) {
+        graph0.pop();
     }
 
     @Override
@@ -564,7 +925,7 @@ public class LineSwapper {
             }
             realizationsOfMinimalLists.add(realizationGraph);
         }
-        return new RealizationGraph();
+        return new RealizationGraph(getSwapIndexer());
     }
 
     private void addDependenciesRecursively(UnorderedSwap swap, List<UnorderedSwap> swapsOfThisSublist,
@@ -719,7 +1080,7 @@ public class LineSwapper {
         if (realizationA == null || realizationB == null || realizationC == null) {
             return null;
         }
-        return new RealizationGraph(); //todo return "real" realization graph
+        return new RealizationGraph(getSwapIndexer()); //todo return "real" realization graph
     }
 
     private boolean getNextCombination(boolean[] takeFirst) {
@@ -1098,9 +1459,8 @@ public class LineSwapper {
 
         ArrayList<Line> currentTangle =
                 IntStream.range(0, numberOfLines).mapToObj(Line::new) .collect(Collectors.toCollection(ArrayList::new));
-        RealizationGraph realization = new RealizationGraph();
+        RealizationGraph realization = new RealizationGraph(getSwapIndexer());
         Pair<OrderedSwap, Integer> lastVertexInRealization = null;
-        int edgeCounter = 0;
         while (!remainingSwaps.isEmpty()) {
             ArrayList<UnorderedSwap> allOpenSwapsOfCurrentNeighbors =
                     getAllOpenSwapsOfCurrentNeighbors(remainingSwaps, currentTangle);
@@ -1125,7 +1485,7 @@ public class LineSwapper {
                     new Pair<>(new OrderedSwap(swapToBeExecuted.getValue1(), swapToBeExecuted.getValue0()), 0);
             realization.addVertex(currentVertexInRealization);
             if (lastVertexInRealization != null) {
-                realization.addEdge(edgeCounter++, lastVertexInRealization, currentVertexInRealization);
+                realization.addEdge(lastVertexInRealization, currentVertexInRealization);
             }
             lastVertexInRealization = currentVertexInRealization;
 
@@ -30,6 +30,8 @@ public class MainClass {
     private static final String PATH_TO_PYTHON_FILE_DIR = "..";
     private static final String PYTHON_FILE_NAME = "svgExporter.py";
     private static final String PATH_SWAPPING_DIAGRAMS = "swapping-diagrams";
+    //time budget for a single instance of donkey's construction
+    private static final long DONKEY_TIME_BUDGET_MILLIS = 60 * 60 * 1000;
 
 
     private static final long SEED = 123;
@@ -163,12 +165,12 @@ public class MainClass {
 
 
     public static void visualizeAllRealizations(LineSwapper lineSwapper) {
-        Collection<RealizationGraph> allRealizations = lineSwapper.computeAllRealizations();
-
-        List<AbstractLayout<Pair<OrderedSwap, Integer>, Integer>> allLayouts = new ArrayList<>(allRealizations.size());
+        List<AbstractLayout<Pair<OrderedSwap, Integer>, Integer>> allLayouts = new ArrayList<>();
         Dimension size = new Dimension(600, 600);
-        for (RealizationGraph realization : allRealizations) {
-            MyDAGLayout<Pair<OrderedSwap, Integer>, Integer> drawing = new MyDAGLayout<>(realization);
+        //one realization at a time, only the layouts are kept
+        for (Iterator<RealizationGraph> iterator = lineSwapper.iterateAllRealizations(); iterator.hasNext(); ) {
+            RealizationGraph realization = iterator.next();
+            MyDAGLayout<Pair<OrderedSwap, Integer>, Integer> drawing = new MyDAGLayout<>(realization.toJungGraph());
             drawing.setSize(size);
             drawing.initialize();
 //          while (!drawing.done()) {
@@ -188,7 +190,7 @@ public class MainClass {
 
         List<AbstractLayout<Pair<OrderedSwap, Integer>, Integer>> allLayouts = new ArrayList<>(1);
         Dimension size = new Dimension(600, 600);
-        MyDAGLayout<Pair<OrderedSwap, Integer>, Integer> drawing = new MyDAGLayout<>(realization);
+        MyDAGLayout<Pair<OrderedSwap, Integer>, Integer> drawing = new MyDAGLayout<>(realization.toJungGraph());
         drawing.setSize(size);
         drawing.initialize();
 //          while (!drawing.done()) {
@@ -449,7 +451,8 @@ public class MainClass {
     }
 
     /**
-     * Runs forever. Must be terminated from the outside
+     * Runs forever. Must be terminated from the outside.
+     * Each instance gets at most {@link #DONKEY_TIME_BUDGET_MILLIS}.
      */
     private static void testDonkeysConstruction() {
         int k = 2; //swap multiplicity (doubled each time something fails)
@@ -482,15 +485,23 @@ public class MainClass {
                 donkeysInstance.getNumberOfSwaps() + " swaps.");
 
 
-        RealizationGraph realizationGraph = donkeysInstance.computeOneMinHeightRealization();
+        SolveOutcome<RealizationGraph> outcome = donkeysInstance.computeOneMinHeightRealization(
+                CancellationToken.withTimeout(DONKEY_TIME_BUDGET_MILLIS));
+        RealizationGraph realizationGraph = outcome.getResult();
+        System.out.println("Triplet realizations: " + SwapTripletRegistry.getRealizationHits() + " hits, " +
+                SwapTripletRegistry.getRealizationMisses() + " misses, " +
+                SwapTripletRegistry.getRealizationEvictions() + " evictions, " +
+                SwapTripletRegistry.getResidentRealizationBytes() / (1024 * 1024) + " MB kept.");
 
         if (realizationGraph == null) {
-            System.out.println("!!! FOUND NO REALIZATION !!!");
+            System.out.println(outcome.isTimedOut() ? "!!! TIMED OUT WITHOUT A REALIZATION !!!" :
+                    "!!! FOUND NO REALIZATION !!!");
             return false;
         }
 
         SwappingDiagram swappingDiagram = realizationGraph.getSwappingDiagramOfMinimumHeight(donkeysInstance);
-        System.out.println("Found a realization with " + swappingDiagram.getLayers().size() + " layers.");
+        System.out.println("Found a realization with " + swappingDiagram.getLayers().size() + " layers" +
+                (outcome.isTimedOut() ? " (timed out, maybe not of minimum height)." : "."));
         drawSwappingDiagram(donkeysInstance, swappingDiagram,
                 PATH_SWAPPING_DIAGRAMS + File.separator + "donkey-m" + m + "-k" + k + ".svg");
         return true;
@@ -508,7 +519,8 @@ public class MainClass {
         }
     }
 
-    private static LinkedHashSet<LineSwapper> alreadyCheckedRandomly = new LinkedHashSet<>();
+    //an instance and its mirror image are checked only once, as long as they are in the cache
+    private static RealizationCache realizationCache = new RealizationCache();
 
     public static void checkRandomNonSeparable02List(int numberOfWires, Random02ListGenerator.Method method,
                                                      int numberOfLinearOrders) throws NoRealizationException {
@@ -516,10 +528,9 @@ public class MainClass {
             LinkedHashMap<UnorderedSwap, Integer> candidateList =
                     Random02ListGenerator.getRandomNonSeparable02List(method, numberOfWires, numberOfLinearOrders);
             LineSwapper lineSwapper = new LineSwapper(candidateList, numberOfWires);
-            if (!alreadyCheckedRandomly.contains(lineSwapper)) {
-//                Collection<RealizationGraph> allRealizations = lineSwapper.computeAllRealizations();
-//                int count = allRealizations.size();
-                if (lineSwapper.hasRealization()) {
+            if (!realizationCache.contains(lineSwapper)) {
+//                long count = lineSwapper.countAllRealizations();
+                if (realizationCache.hasRealization(lineSwapper)) {
 //                if (count > 0) {
 //                    visualizeAllRealizations(lineSwapper);
                     System.out.println(
@@ -531,7 +542,6 @@ public class MainClass {
                     System.out.println("NO REALIZATION FOUND FOR " + candidateList);
                     throw new NoRealizationException();
                 }
-                alreadyCheckedRandomly.add(lineSwapper);
                 break;
             }
             else {
@@ -660,8 +670,9 @@ public class MainClass {
                     System.out.println((currentStep * 100 / totalSteps) + " %");
                 }
                 //evaluate
-                if (isNonSeparable(swapList)) {
-                    LineSwapper lineSwapper = new LineSwapper(swapList, numberOfLines);
+                LineSwapper lineSwapper = new LineSwapper(swapList, numberOfLines);
+                //the mirror image is enumerated as well and has a realization iff this one has
+                if (isNonSeparable(swapList) && !lineSwapper.isCanonicalFormMirrored()) {
                     if (lineSwapper.hasRealization()) {
 //                        System.out.println("The following 0-2-*-swap-set can be realized on " + numberOfLines +" " +
 //                                "lines: " + swapList);
@@ -725,6 +736,9 @@ public class MainClass {
 
     public static void parityCheck() {
         int maxTotal = 1300;
+        //one bit per triplet, filled bottom-up instead of recursively
+        TripletFeasibilityTable feasibilityTable = TripletFeasibilityTable.build(maxTotal);
+        SwapTripletRegistry.setFeasibilityTable(feasibilityTable);
         for (int i = 0; i <= maxTotal; ++i) {
             for (int j = 0; j <= maxTotal; ++j) {
                 for (int k = 0; k <= maxTotal; ++k) {
@@ -732,7 +746,7 @@ public class MainClass {
                     if (i % 2 == k % 2 && i % 2 != j % 2) {
                         parityRealizable = false;
                     }
-                    if (!SwapTripletRegistry.isRealizable(i, j, k) && parityRealizable) {
+                    if (!feasibilityTable.isRealizable(i, j, k) && parityRealizable) {
                         System.out.println("Found configuration that is contradiction free in terms of parity, but not realizable!!!");
                         System.out.println("It is ("+i+", "+j+", "+k+"): "+SwapTripletRegistry.getRealizations(i, j, k));
                     }
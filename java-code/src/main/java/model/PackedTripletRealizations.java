@@ -0,0 +1,210 @@
+package model;
+
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * All realizations of one triplet of lines with given numbers of swaps, 3 bits per swap in one array of longs.
+ *
+ * A swap is encoded as 2 * pair + reversed, where pair is 0 for the lines (0,1), 1 for (0,2), 2 for (1,2), and
+ * reversed is 1 iff the greater line is left before the swap (i.e., SWAP_10, SWAP_20, SWAP_21).
+ * A long holds 21 swaps; each realization starts at a new long.
+ * The swaps of a realization are stored from its last one (lowest bits) to its first one, such that putting a swap in
+ * front of a realization just sets one more field behind the others.
+ *
+ * Realizations are built from the ones of smaller triplets (see {@link SwapTripletRegistry}), whose lines are
+ * renamed; with this encoding, renaming the lines changes all 21 swaps of a long at once with a few bit operations.
+ * The longs are either on the heap or mapped from a {@link TripletRealizationFile}.
+ */
+class PackedTripletRealizations {
+
+    private static final int BITS_PER_SWAP = 3;
+    private static final int SWAPS_PER_LONG = 21;
+    private static final long SWAP_MASK = 7;
+    //the lowest bit of every field
+    private static final long LOWEST_BITS = 0x1249249249249249L;
+
+    private static final SwapTripletRegistry.TripletSwap[] SWAP_OF_CODE = {
+            SwapTripletRegistry.TripletSwap.SWAP_01, SwapTripletRegistry.TripletSwap.SWAP_10,
+            SwapTripletRegistry.TripletSwap.SWAP_02, SwapTripletRegistry.TripletSwap.SWAP_20,
+            SwapTripletRegistry.TripletSwap.SWAP_12, SwapTripletRegistry.TripletSwap.SWAP_21};
+    static final int CODE_01 = 0;
+    static final int CODE_12 = 4;
+
+    //number of swaps of each realization
+    private final int length;
+    private final int longsPerRealization;
+    private final LongBuffer arena;
+    private int size = 0;
+
+    PackedTripletRealizations(int length, int capacity) {
+        this.length = length;
+        this.longsPerRealization = getLongsPerRealization(length);
+        this.arena = LongBuffer.wrap(new long[capacity * longsPerRealization]);
+    }
+
+    /**
+     * @param arena
+     *      size realizations of this length as put by {@link #copyArenaTo(int, int, LongBuffer, int)}; it is not
+     *      copied
+     */
+    PackedTripletRealizations(int length, int size, LongBuffer arena) {
+        this.length = length;
+        this.longsPerRealization = getLongsPerRealization(length);
+        this.arena = arena;
+        this.size = size;
+    }
+
+    /**
+     * @return number of longs taken by each realization with this many swaps
+     */
+    static int getLongsPerRealization(int length) {
+        return (length + SWAPS_PER_LONG - 1) / SWAPS_PER_LONG;
+    }
+
+    /**
+     * @return the realizations of the triplet without swaps: only the empty one
+     */
+    static PackedTripletRealizations ofEmptyRealization() {
+        PackedTripletRealizations realizations = new PackedTripletRealizations(0, 1);
+        realizations.size = 1;
+        return realizations;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of swaps of each realization
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * @return approximate number of bytes taken by these realizations
+     */
+    long getSizeInBytes() {
+        //object headers and fields; mapped longs are not on the heap
+        return 64 + (arena.hasArray() ? 8L * arena.capacity() : 0);
+    }
+
+    /**
+     * @return number of longs taken by all realizations
+     */
+    int getNumberOfLongs() {
+        return size * longsPerRealization;
+    }
+
+    /**
+     * Puts count longs of the realizations, starting with the one at index first, into target, starting at its index
+     * targetIndex.
+     */
+    void copyArenaTo(int first, int count, LongBuffer target, int targetIndex) {
+        for (int i = 0; i < count; i++) {
+            target.put(targetIndex + i, arena.get(first + i));
+        }
+    }
+
+    /**
+     * @return code of the swap at position (0 = executed first) of the realization with this index
+     */
+    int getCode(int realization, int position) {
+        int field = length - 1 - position;
+        long word = arena.get(realization * longsPerRealization + field / SWAPS_PER_LONG);
+        return (int) (word >>> (BITS_PER_SWAP * (field % SWAPS_PER_LONG)) & SWAP_MASK);
+    }
+
+    /**
+     * @return 0 for the lines (0,1), 1 for (0,2), 2 for (1,2)
+     */
+    static int getPair(int code) {
+        return code >>> 1;
+    }
+
+    List<SwapTripletRegistry.TripletSwap> decode(int realization) {
+        List<SwapTripletRegistry.TripletSwap> swaps = new ArrayList<>(length);
+        for (int position = 0; position < length; position++) {
+            swaps.add(SWAP_OF_CODE[getCode(realization, position)]);
+        }
+        return swaps;
+    }
+
+    /**
+     * @return read-only view of all realizations, decoded when they are accessed
+     */
+    List<List<SwapTripletRegistry.TripletSwap>> asList() {
+        return new DecodedList();
+    }
+
+    /**
+     * Appends the realization that executes the swap firstCode and then the realization baseRealization of base with
+     * renamed lines: lines 0 and 1 exchange their names if firstCode is {@link #CODE_01}, lines 1 and 2 if it is
+     * {@link #CODE_12}.
+     */
+    void addWithFirstSwap(int firstCode, PackedTripletRealizations base, int baseRealization) {
+        int offset = size * longsPerRealization;
+        int baseOffset = baseRealization * base.longsPerRealization;
+        for (int i = 0; i < base.longsPerRealization; i++) {
+            long word = base.arena.get(baseOffset + i);
+            arena.put(offset + i, firstCode == CODE_01 ? interchangeLines01(word) : interchangeLines12(word));
+        }
+        //renaming turned the empty fields behind the base realization into swaps, clear them
+        int usedFieldsInLastLong = base.length - (base.longsPerRealization - 1) * SWAPS_PER_LONG;
+        if (base.longsPerRealization > 0 && usedFieldsInLastLong < SWAPS_PER_LONG) {
+            int index = offset + base.longsPerRealization - 1;
+            arena.put(index, arena.get(index) & (1L << (BITS_PER_SWAP * usedFieldsInLastLong)) - 1);
+        }
+        //the first swap goes behind the base realization
+        int field = length - 1;
+        int index = offset + field / SWAPS_PER_LONG;
+        arena.put(index, arena.get(index) | (long) firstCode << (BITS_PER_SWAP * (field % SWAPS_PER_LONG)));
+        ++size;
+    }
+
+    /**
+     * Renames the lines 0 and 1 in all 21 swaps of word at once: 01 <-> 10, 02 <-> 12, 20 <-> 21.
+     * In terms of the bits x2 x1 x0 of a swap: the pair (x2, x1) = 00 keeps its pair and flips x0, the pairs 01 and 10
+     * exchange, i.e., x1 and x2 exchange.
+     */
+    static long interchangeLines01(long word) {
+        long x0 = word & LOWEST_BITS;
+        long x1 = (word >>> 1) & LOWEST_BITS;
+        long x2 = (word >>> 2) & LOWEST_BITS;
+        long isPair01 = ~(x1 | x2) & LOWEST_BITS;
+        return (x0 ^ isPair01) | (x2 << 1) | (x1 << 2);
+    }
+
+    /**
+     * Renames the lines 1 and 2 in all 21 swaps of word at once: 12 <-> 21, 01 <-> 02, 10 <-> 20.
+     * In terms of the bits x2 x1 x0 of a swap: the pair (x2, x1) = 10 keeps its pair and flips x0, the pairs 00 and 01
+     * exchange, i.e., x1 flips iff x2 is 0.
+     */
+    static long interchangeLines12(long word) {
+        long x0 = word & LOWEST_BITS;
+        long x1 = (word >>> 1) & LOWEST_BITS;
+        long x2 = (word >>> 2) & LOWEST_BITS;
+        return (x0 ^ x2) | ((x1 ^ (~x2 & LOWEST_BITS)) << 1) | (x2 << 2);
+    }
+
+    private final class DecodedList extends AbstractList<List<SwapTripletRegistry.TripletSwap>>
+            implements RandomAccess {
+
+        @Override
+        public List<SwapTripletRegistry.TripletSwap> get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size + ".");
+            }
+            return decode(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Mutable, acyclic realization graph that is built up by applying one (triplet) realization after another.
+ * Every applied realization opens a new level; the vertices and edges it contributed (i.e., the ones that were not
+ * present before) are recorded on a trail, such that {@link #pop()} removes exactly these again.
+ * Hence, a backtracking search can go back any number of levels without rebuilding the graph from scratch.
+ *
+ * Acyclicity is maintained with an {@link IncrementalTopologicalOrder}.
+ * Every edge is labelled with the level that contributed it; if a realization is rejected, the levels that contributed
+ * the edges of the cycle it would have closed are available by {@link #getConflictLevels()}.
+ *
+ * For every vertex, the lengths of the longest paths ending and starting in it are maintained incrementally, too.
+ * They give the earliest and the latest layer of the swap in a swapping diagram of minimum height, hence also this
+ * height.
+ * An inserted edge only updates the vertices whose values actually change (processed in topological order); the old
+ * values are recorded on a trail and restored by {@link #pop()}.
+ */
+public class PartialRealization {
+
+    private final SwapIndexer swapIndexer;
+    private final IncrementalTopologicalOrder topologicalOrder;
+
+    private final boolean[] isVertex;
+
+    //number of edges of a longest path ending resp. starting in each vertex
+    private final int[] earliestLayer;
+    private final int[] remainingLayers;
+    //number of vertices per earliest layer
+    private final int[] layerSize;
+    private int lastLayer = -1;
+
+    //trail of the contributed vertices and edges (see RealizationGraph.edgeKey) in the order of their insertion
+    private int[] vertexTrail = new int[16];
+    private int vertexTrailSize = 0;
+    private long[] edgeTrail = new long[16];
+    private int edgeTrailSize = 0;
+    //trail of the old values of earliestLayer and remainingLayers; packed as (vertex, kind, old value)
+    private long[] valueTrail = new long[16];
+    private int valueTrailSize = 0;
+
+    //for each level: where its part of the trails starts
+    private int[] levelVertexTrailStart = new int[16];
+    private int[] levelEdgeTrailStart = new int[16];
+    private int[] levelValueTrailStart = new int[16];
+    private int depth = 0;
+
+    //the levels responsible for the last rejection
+    private int[] conflictLevels = new int[16];
+    private int conflictLevelCount = 0;
+
+    //binary heap of vertices for processing them in topological order
+    private int[] heap = new int[16];
+    private int heapSize = 0;
+    private final boolean[] isInHeap;
+
+    public PartialRealization(SwapIndexer swapIndexer) {
+        this.swapIndexer = swapIndexer;
+        this.topologicalOrder = new IncrementalTopologicalOrder(swapIndexer.getNumberOfSwaps());
+        this.isVertex = new boolean[swapIndexer.getNumberOfSwaps()];
+        this.earliestLayer = new int[swapIndexer.getNumberOfSwaps()];
+        this.remainingLayers = new int[swapIndexer.getNumberOfSwaps()];
+        this.layerSize = new int[swapIndexer.getNumberOfSwaps() + 1];
+        this.isInHeap = new boolean[swapIndexer.getNumberOfSwaps()];
+    }
+
+    public SwapIndexer getSwapIndexer() {
+        return swapIndexer;
+    }
+
+    /**
+     * @return number of realizations applied and not popped yet
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getVertexCount() {
+        return vertexTrailSize;
+    }
+
+    public int getEdgeCount() {
+        return edgeTrailSize;
+    }
+
+    public boolean containsVertex(int swapId) {
+        return isVertex[swapId];
+    }
+
+    /**
+     * Applies realization as a new level if this keeps the graph acyclic.
+     *
+     * @return false iff realization would close a cycle; then nothing is changed and no level is opened, and
+     * {@link #getConflictLevels()} gives the levels that contributed the other edges of the cycle
+     */
+    public boolean push(RealizationGraph realization) {
+        return push(realization, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Applies realization as a new level if this keeps the graph acyclic and its height at most maxHeight.
+     *
+     * @return false iff realization would close a cycle or exceed maxHeight; then nothing is changed and no level is
+     * opened, and {@link #getConflictLevels()} gives the levels that contributed the other edges of the cycle resp. of
+     * a longest path
+     */
+    public boolean push(RealizationGraph realization, int maxHeight) {
+        if (depth == levelVertexTrailStart.length) {
+            levelVertexTrailStart = Arrays.copyOf(levelVertexTrailStart, 2 * depth);
+            levelEdgeTrailStart = Arrays.copyOf(levelEdgeTrailStart, 2 * depth);
+            levelValueTrailStart = Arrays.copyOf(levelValueTrailStart, 2 * depth);
+        }
+        levelVertexTrailStart[depth] = vertexTrailSize;
+        levelEdgeTrailStart[depth] = edgeTrailSize;
+        levelValueTrailStart[depth] = valueTrailSize;
+        ++depth;
+
+        for (int vertex : realization.getVertexIds()) {
+            if (!isVertex[vertex]) {
+                isVertex[vertex] = true;
+                if (vertexTrailSize == vertexTrail.length) {
+                    vertexTrail = Arrays.copyOf(vertexTrail, 2 * vertexTrailSize);
+                }
+                vertexTrail[vertexTrailSize++] = vertex;
+                //a new vertex is isolated, i.e., it is in the first layer
+                ++layerSize[0];
+                lastLayer = Math.max(lastLayer, 0);
+            }
+        }
+        for (long edge : realization.getEdgeKeys()) {
+            int source = RealizationGraph.edgeSource(edge);
+            int target = RealizationGraph.edgeTarget(edge);
+            if (topologicalOrder.containsEdge(source, target)) {
+                continue;
+            }
+            if (!topologicalOrder.addEdge(source, target, depth - 1)) {
+                recordConflictLevels();
+                pop();
+                return false;
+            }
+            if (edgeTrailSize == edgeTrail.length) {
+                edgeTrail = Arrays.copyOf(edgeTrail, 2 * edgeTrailSize);
+            }
+            edgeTrail[edgeTrailSize++] = edge;
+            updateEarliestLayers(source, target);
+            updateRemainingLayers(source, target);
+        }
+        if (getHeight() > maxHeight) {
+            //edges of the rejected level itself do not count
+            recordLongestPathLevels(depth - 1);
+            pop();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the distinct levels (each < {@link #getDepth()}) that contributed the edges of the cycle resp. the longest
+     * path that made the last {@link #push(RealizationGraph, int)} fail, in the first {@link #getConflictLevelCount()} entries; must not be
+     * modified
+     */
+    public int[] getConflictLevels() {
+        return conflictLevels;
+    }
+
+    public int getConflictLevelCount() {
+        return conflictLevelCount;
+    }
+
+    private void recordConflictLevels() {
+        int[] labels = topologicalOrder.getCycleLabels();
+        int length = topologicalOrder.getCycleLength();
+        if (conflictLevels.length < length) {
+            conflictLevels = new int[length];
+        }
+        conflictLevelCount = 0;
+        for (int i = 0; i < length; i++) {
+            //edges of the rejected level itself do not count
+            if (labels[i] < depth - 1) {
+                conflictLevels[conflictLevelCount++] = labels[i];
+            }
+        }
+        normalizeConflictLevels();
+    }
+
+    /**
+     * Makes {@link #getConflictLevels()} give the distinct levels that contributed the edges of a longest path.
+     */
+    public void recordLongestPathConflict() {
+        recordLongestPathLevels(depth);
+    }
+
+    /**
+     * Records the levels (< levelBound) of the edges of a longest path, found backwards from a vertex in the last
+     * layer.
+     */
+    private void recordLongestPathLevels(int levelBound) {
+        conflictLevelCount = 0;
+        int vertex = -1;
+        for (int i = 0; i < vertexTrailSize && vertex < 0; i++) {
+            if (earliestLayer[vertexTrail[i]] == lastLayer) {
+                vertex = vertexTrail[i];
+            }
+        }
+        if (vertex < 0) {
+            return;
+        }
+        if (conflictLevels.length < lastLayer) {
+            conflictLevels = new int[lastLayer];
+        }
+        while (earliestLayer[vertex] > 0) {
+            int[] predecessors = topologicalOrder.getPredecessors(vertex);
+            int predecessor = -1;
+            for (int i = topologicalOrder.getPredecessorCount(vertex) - 1; predecessor < 0; i--) {
+                if (earliestLayer[predecessors[i]] == earliestLayer[vertex] - 1) {
+                    predecessor = predecessors[i];
+                }
+            }
+            int[] successors = topologicalOrder.getSuccessors(predecessor);
+            int label = -1;
+            for (int i = topologicalOrder.getSuccessorCount(predecessor) - 1; label < 0; i--) {
+                if (successors[i] == vertex) {
+                    label = topologicalOrder.getSuccessorLabels(predecessor)[i];
+                }
+            }
+            if (label < levelBound) {
+                conflictLevels[conflictLevelCount++] = label;
+            }
+            vertex = predecessor;
+        }
+        normalizeConflictLevels();
+    }
+
+    private void normalizeConflictLevels() {
+        Arrays.sort(conflictLevels, 0, conflictLevelCount);
+        int distinct = 0;
+        for (int i = 0; i < conflictLevelCount; i++) {
+            if (distinct == 0 || conflictLevels[distinct - 1] != conflictLevels[i]) {
+                conflictLevels[distinct++] = conflictLevels[i];
+            }
+        }
+        conflictLevelCount = distinct;
+    }
+
+    /**
+     * Removes the vertices and edges contributed by the most recently applied realization.
+     */
+    public void pop() {
+        --depth;
+        int valueTrailStart = levelValueTrailStart[depth];
+        while (valueTrailSize > valueTrailStart) {
+            long entry = valueTrail[--valueTrailSize];
+            int vertex = (int) (entry >>> 33);
+            int oldValue = (int) entry;
+            if ((entry & (1L << 32)) == 0) {
+                --layerSize[earliestLayer[vertex]];
+                ++layerSize[oldValue];
+                earliestLayer[vertex] = oldValue;
+            }
+            else {
+                remainingLayers[vertex] = oldValue;
+            }
+        }
+        int edgeTrailStart = levelEdgeTrailStart[depth];
+        while (edgeTrailSize > edgeTrailStart) {
+            long edge = edgeTrail[--edgeTrailSize];
+            topologicalOrder.removeEdge(RealizationGraph.edgeSource(edge), RealizationGraph.edgeTarget(edge));
+        }
+        int vertexTrailStart = levelVertexTrailStart[depth];
+        while (vertexTrailSize > vertexTrailStart) {
+            isVertex[vertexTrail[--vertexTrailSize]] = false;
+            --layerSize[0];
+        }
+        while (lastLayer >= 0 && layerSize[lastLayer] == 0) {
+            --lastLayer;
+        }
+    }
+
+    /**
+     * @return number of layers of a swapping diagram of minimum height for the current graph
+     */
+    public int getHeight() {
+        return lastLayer + 1;
+    }
+
+    /**
+     * @return index of the first layer the swap can be executed in (in a swapping diagram of minimum height)
+     */
+    public int getEarliestLayer(int swapId) {
+        return earliestLayer[swapId];
+    }
+
+    /**
+     * @return index of the last layer the swap can be executed in (in a swapping diagram of minimum height)
+     */
+    public int getLatestLayer(int swapId) {
+        return lastLayer - remainingLayers[swapId];
+    }
+
+    /**
+     * After inserting source -> target: raise the earliest layers behind source, in topological order such that every
+     * vertex is updated at most once.
+     */
+    private void updateEarliestLayers(int source, int target) {
+        if (earliestLayer[source] + 1 <= earliestLayer[target]) {
+            return;
+        }
+        setEarliestLayer(target, earliestLayer[source] + 1);
+        heapInsert(target, false);
+        while (heapSize > 0) {
+            int vertex = heapRemoveFirst(false);
+            int[] successors = topologicalOrder.getSuccessors(vertex);
+            for (int i = topologicalOrder.getSuccessorCount(vertex) - 1; i >= 0; i--) {
+                int successor = successors[i];
+                if (earliestLayer[vertex] + 1 > earliestLayer[successor]) {
+                    setEarliestLayer(successor, earliestLayer[vertex] + 1);
+                    if (!isInHeap[successor]) {
+                        heapInsert(successor, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * After inserting source -> target: raise the remaining layers in front of target, in reverse topological order
+     * such that every vertex is updated at most once.
+     */
+    private void updateRemainingLayers(int source, int target) {
+        if (remainingLayers[target] + 1 <= remainingLayers[source]) {
+            return;
+        }
+        setRemainingLayers(source, remainingLayers[target] + 1);
+        heapInsert(source, true);
+        while (heapSize > 0) {
+            int vertex = heapRemoveFirst(true);
+            int[] predecessors = topologicalOrder.getPredecessors(vertex);
+            for (int i = topologicalOrder.getPredecessorCount(vertex) - 1; i >= 0; i--) {
+                int predecessor = predecessors[i];
+                if (remainingLayers[vertex] + 1 > remainingLayers[predecessor]) {
+                    setRemainingLayers(predecessor, remainingLayers[vertex] + 1);
+                    if (!isInHeap[predecessor]) {
+                        heapInsert(predecessor, true);
+                    }
+                }
+            }
+        }
+    }
+
+    private void setEarliestLayer(int vertex, int value) {
+        recordValue(vertex, 0, earliestLayer[vertex]);
+        --layerSize[earliestLayer[vertex]];
+        ++layerSize[value];
+        earliestLayer[vertex] = value;
+        lastLayer = Math.max(lastLayer, value);
+    }
+
+    private void setRemainingLayers(int vertex, int value) {
+        recordValue(vertex, 1, remainingLayers[vertex]);
+        remainingLayers[vertex] = value;
+    }
+
+    private void recordValue(int vertex, int kind, int oldValue) {
+        if (valueTrailSize == valueTrail.length) {
+            valueTrail = Arrays.copyOf(valueTrail, 2 * valueTrailSize);
+        }
+        valueTrail[valueTrailSize++] = ((long) vertex << 33) | ((long) kind << 32) | oldValue;
+    }
+
+    /**
+     * The heap is ordered by the positions in the topological order; decreasingly if reversed.
+     */
+    private boolean isHeapOrdered(int vertex0, int vertex1, boolean reversed) {
+        int position0 = topologicalOrder.getPosition(vertex0);
+        int position1 = topologicalOrder.getPosition(vertex1);
+        return reversed ? position0 >= position1 : position0 <= position1;
+    }
+
+    private void heapInsert(int vertex, boolean reversed) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, 2 * heapSize);
+        }
+        isInHeap[vertex] = true;
+        int index = heapSize++;
+        while (index > 0 && !isHeapOrdered(heap[(index - 1) / 2], vertex, reversed)) {
+            heap[index] = heap[(index - 1) / 2];
+            index = (index - 1) / 2;
+        }
+        heap[index] = vertex;
+    }
+
+    private int heapRemoveFirst(boolean reversed) {
+        int first = heap[0];
+        isInHeap[first] = false;
+        int last = heap[--heapSize];
+        int index = 0;
+        while (2 * index + 1 < heapSize) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && !isHeapOrdered(heap[child], heap[child + 1], reversed)) {
+                ++child;
+            }
+            if (isHeapOrdered(last, heap[child], reversed)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = last;
+        return first;
+    }
+
+    /**
+     * @return a copy of the current graph
+     */
+    public RealizationGraph toRealizationGraph() {
+        return new RealizationGraph(swapIndexer, Arrays.copyOf(vertexTrail, vertexTrailSize),
+                Arrays.copyOf(edgeTrail, edgeTrailSize));
+    }
+}
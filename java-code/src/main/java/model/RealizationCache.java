@@ -0,0 +1,113 @@
+package model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache of computed realizations shared by several {@link LineSwapper}s.
+ *
+ * An instance and its mirror image (see {@link LineSwapper#getCanonicalForm()}) share one entry: the realization is
+ * stored for the canonical form and mirrored back if the requesting instance is the mirror image of it.
+ * Infeasible instances are cached as well.
+ * Each kind of realization is kept for at most maximumSize instances; beyond that, the least recently used one is
+ * dropped.
+ * It can be used by several threads at the same time; instances are solved outside of the lock.
+ */
+public class RealizationCache {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1 << 16;
+
+    private final Map<LineSwapper, Optional<RealizationGraph>> oneRealizations;
+    private final Map<LineSwapper, Optional<RealizationGraph>> oneMinHeightRealizations;
+
+    public RealizationCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public RealizationCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize + ".");
+        }
+        this.oneRealizations = Collections.synchronizedMap(new LeastRecentlyUsedMap(maximumSize));
+        this.oneMinHeightRealizations = Collections.synchronizedMap(new LeastRecentlyUsedMap(maximumSize));
+    }
+
+    /**
+     * Like {@link LineSwapper#computeOneRealization()}.
+     *
+     * @return null if no realization exists
+     */
+    public RealizationGraph computeOneRealization(LineSwapper lineSwapper) {
+        return lookUp(oneRealizations, lineSwapper, LineSwapper::computeOneRealization);
+    }
+
+    /**
+     * Like {@link LineSwapper#computeOneMinHeightRealization()}.
+     *
+     * @return null if no realization exists
+     */
+    public RealizationGraph computeOneMinHeightRealization(LineSwapper lineSwapper) {
+        return lookUp(oneMinHeightRealizations, lineSwapper, LineSwapper::computeOneMinHeightRealization);
+    }
+
+    /**
+     * Like {@link LineSwapper#hasRealization()}.
+     */
+    public boolean hasRealization(LineSwapper lineSwapper) {
+        return computeOneRealization(lineSwapper) != null;
+    }
+
+    /**
+     * @return true iff lineSwapper or its mirror image has been solved before and is still cached
+     */
+    public boolean contains(LineSwapper lineSwapper) {
+        LineSwapper canonicalForm = lineSwapper.getCanonicalForm();
+        return oneRealizations.containsKey(canonicalForm) || oneMinHeightRealizations.containsKey(canonicalForm);
+    }
+
+    public int size() {
+        return oneRealizations.size() + oneMinHeightRealizations.size();
+    }
+
+    public void clear() {
+        oneRealizations.clear();
+        oneMinHeightRealizations.clear();
+    }
+
+    private static RealizationGraph lookUp(Map<LineSwapper, Optional<RealizationGraph>> cache,
+                                           LineSwapper lineSwapper, Function<LineSwapper, RealizationGraph> solver) {
+        LineSwapper canonicalForm = lineSwapper.getCanonicalForm();
+        boolean mirrored = lineSwapper.isCanonicalFormMirrored();
+        Optional<RealizationGraph> cachedRealization = cache.get(canonicalForm);
+        if (cachedRealization == null) {
+            RealizationGraph realization = solver.apply(lineSwapper);
+            //store a copy in the canonical orientation; if two threads solve it at the same time, the first one wins
+            cache.putIfAbsent(canonicalForm, Optional.ofNullable(realization).map(graph -> mirrored ?
+                    graph.getMirrorImage(canonicalForm.getSwapIndexer()) : graph.copy(canonicalForm.getSwapIndexer())));
+            return realization;
+        }
+        //the cached graphs are never handed out themselves, as realization graphs can be modified
+        return cachedRealization.map(graph -> mirrored ? graph.getMirrorImage(lineSwapper.getSwapIndexer()) :
+                graph.copy(lineSwapper.getSwapIndexer())).orElse(null);
+    }
+
+    private static final class LeastRecentlyUsedMap extends LinkedHashMap<LineSwapper, Optional<RealizationGraph>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maximumSize;
+
+        LeastRecentlyUsedMap(int maximumSize) {
+            super(16, 0.75f, true);
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LineSwapper, Optional<RealizationGraph>> eldest) {
+            return size() > maximumSize;
+        }
+    }
+}
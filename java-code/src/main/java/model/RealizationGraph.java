@@ -8,11 +8,386 @@ import java.util.*;
 /**
  * Vertices are swaps of lines + the count of the swap (e.g. if the second value of the pair (i,j) is 5,
  * then this is the 5-th ordered(!) swap of i with j, i.e., the 9-th or 10-th unordered swaps of i and j.
- * The data type of the edges is irrelevant.
- * It is here Integer just because JUNG requires something.
+ *
+ * Internally, every vertex is the dense swap id given by the {@link SwapIndexer} of the corresponding
+ * {@link LineSwapper} and every edge is the pair of its swap ids packed into one long (see {@link #edgeKey(int, int)}).
+ * Both are kept in sorted primitive arrays (sorted lazily after insertions: inserted ones are appended, and also kept in
+ * a hash set until the next read such that inserting does not sort).
+ * Use {@link #toJungGraph()} to get a JUNG graph, e.g., for visualizing it.
  */
-public class RealizationGraph extends DirectedSparseGraph<Pair<OrderedSwap, Integer>, Integer> {
+public class RealizationGraph {
 
+    private final SwapIndexer swapIndexer;
+
+    private int[] vertices;
+    private int vertexCount;
+    private boolean verticesNormalized = true;
+    //vertices[0, sortedVertexCount) is sorted, the ones behind are in appendedVertices (null if there are none)
+    private int sortedVertexCount;
+    private HashSet<Integer> appendedVertices;
+
+    private long[] edges;
+    private int edgeCount;
+    private boolean edgesNormalized = true;
+    //likewise for the edges
+    private int sortedEdgeCount;
+    private HashSet<Long> appendedEdges;
+
+    //see getFingerprintHigh(), computed lazily and reset by every modification
+    private long fingerprintHigh;
+    private long fingerprintLow;
+    private boolean hasFingerprint = false;
+
+    public RealizationGraph(SwapIndexer swapIndexer) {
+        this(swapIndexer, new int[0], new long[0]);
+    }
+
+    /**
+     * The arrays are taken over and must not be modified afterwards.
+     * They need not be sorted.
+     */
+    RealizationGraph(SwapIndexer swapIndexer, int[] vertices, long[] edges) {
+        this.swapIndexer = swapIndexer;
+        this.vertices = vertices;
+        this.vertexCount = vertices.length;
+        this.verticesNormalized = vertices.length == 0;
+        this.edges = edges;
+        this.edgeCount = edges.length;
+        this.edgesNormalized = edges.length == 0;
+        //normalize and trim right away such that this graph is not modified by read accesses
+        getVertexIds();
+        getEdgeKeys();
+    }
+
+    /**
+     * @return the path executionSequence[0] -> executionSequence[1] -> ...
+     */
+    static RealizationGraph ofExecutionSequence(SwapIndexer swapIndexer, int[] executionSequence) {
+        long[] edges = new long[Math.max(0, executionSequence.length - 1)];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = edgeKey(executionSequence[i], executionSequence[i + 1]);
+        }
+        return new RealizationGraph(swapIndexer, executionSequence.clone(), edges);
+    }
+
+    /**
+     * @param mirroredSwapIndexer
+     *      swap indexer of the mirrored instance, in which line i becomes line n-1-i
+     * @return the realization of the mirrored instance whose swapping diagrams are the mirror images of the ones of
+     * this realization
+     */
+    public RealizationGraph getMirrorImage(SwapIndexer mirroredSwapIndexer) {
+        int[] vertexIds = getVertexIds();
+        int[] mirroredVertices = new int[vertexIds.length];
+        for (int i = 0; i < vertexIds.length; i++) {
+            mirroredVertices[i] = getMirroredSwapId(vertexIds[i], mirroredSwapIndexer);
+        }
+        long[] edgeKeys = getEdgeKeys();
+        long[] mirroredEdges = new long[edgeKeys.length];
+        for (int i = 0; i < edgeKeys.length; i++) {
+            mirroredEdges[i] = edgeKey(getMirroredSwapId(edgeSource(edgeKeys[i]), mirroredSwapIndexer),
+                    getMirroredSwapId(edgeTarget(edgeKeys[i]), mirroredSwapIndexer));
+        }
+        return new RealizationGraph(mirroredSwapIndexer, mirroredVertices, mirroredEdges);
+    }
+
+    /**
+     * The swap (x, y) becomes (n-1-y, n-1-x): what was left before the swap is right in the mirror image.
+     */
+    private int getMirroredSwapId(int swapId, SwapIndexer mirroredSwapIndexer) {
+        int lastLine = swapIndexer.getNumberOfLines() - 1;
+        return mirroredSwapIndexer.getSwapId(lastLine - swapIndexer.getRightLine(swapId),
+                lastLine - swapIndexer.getLeftLine(swapId), swapIndexer.getOccurrence(swapId));
+    }
+
+    /**
+     * @param swapIndexer
+     *      a swap indexer of the same instance
+     */
+    RealizationGraph copy(SwapIndexer swapIndexer) {
+        return new RealizationGraph(swapIndexer, getVertexIds().clone(), getEdgeKeys().clone());
+    }
+
+    static long edgeKey(int source, int target) {
+        return ((long) source << 32) | target;
+    }
+
+    static int edgeSource(long edgeKey) {
+        return (int) (edgeKey >>> 32);
+    }
+
+    static int edgeTarget(long edgeKey) {
+        return (int) edgeKey;
+    }
+
+    public SwapIndexer getSwapIndexer() {
+        return swapIndexer;
+    }
+
+    public boolean addVertex(int swapId) {
+        if (hasVertex(swapId)) {
+            return false;
+        }
+        appendVertex(swapId);
+        return true;
+    }
+
+    public boolean addVertex(Pair<OrderedSwap, Integer> swap) {
+        return addVertex(swapIndexer.getSwapId(swap));
+    }
+
+    /**
+     * Like in JUNG, missing end vertices are added.
+     */
+    public boolean addEdge(int source, int target) {
+        long edgeKey = edgeKey(source, target);
+        if (hasEdge(edgeKey)) {
+            return false;
+        }
+        addVertex(source);
+        addVertex(target);
+        if (edgeCount == edges.length) {
+            edges = Arrays.copyOf(edges, Math.max(4, 2 * edgeCount));
+        }
+        edges[edgeCount++] = edgeKey;
+        if (appendedEdges == null) {
+            appendedEdges = new HashSet<>();
+        }
+        appendedEdges.add(edgeKey);
+        edgesNormalized = false;
+        hasFingerprint = false;
+        return true;
+    }
+
+    public boolean addEdge(Pair<OrderedSwap, Integer> source, Pair<OrderedSwap, Integer> target) {
+        return addEdge(swapIndexer.getSwapId(source), swapIndexer.getSwapId(target));
+    }
+
+    private void appendVertex(int swapId) {
+        if (vertexCount == vertices.length) {
+            vertices = Arrays.copyOf(vertices, Math.max(4, 2 * vertexCount));
+        }
+        vertices[vertexCount++] = swapId;
+        if (appendedVertices == null) {
+            appendedVertices = new HashSet<>();
+        }
+        appendedVertices.add(swapId);
+        verticesNormalized = false;
+        hasFingerprint = false;
+    }
+
+    /**
+     * Like {@link #containsVertex(int)}, but without sorting the vertices appended since the last read.
+     */
+    private boolean hasVertex(int swapId) {
+        return Arrays.binarySearch(vertices, 0, sortedVertexCount, swapId) >= 0 ||
+                (appendedVertices != null && appendedVertices.contains(swapId));
+    }
+
+    private boolean hasEdge(long edgeKey) {
+        return Arrays.binarySearch(edges, 0, sortedEdgeCount, edgeKey) >= 0 ||
+                (appendedEdges != null && appendedEdges.contains(edgeKey));
+    }
+
+    public boolean containsVertex(int swapId) {
+        normalize();
+        return Arrays.binarySearch(vertices, 0, vertexCount, swapId) >= 0;
+    }
+
+    public boolean containsVertex(Pair<OrderedSwap, Integer> swap) {
+        return containsVertex(swapIndexer.getSwapId(swap));
+    }
+
+    /**
+     * @return true iff there is the edge source -> target
+     */
+    public boolean isPredecessor(int source, int target) {
+        normalize();
+        return Arrays.binarySearch(edges, 0, edgeCount, edgeKey(source, target)) >= 0;
+    }
+
+    public boolean isPredecessor(Pair<OrderedSwap, Integer> source, Pair<OrderedSwap, Integer> target) {
+        return isPredecessor(swapIndexer.getSwapId(source), swapIndexer.getSwapId(target));
+    }
+
+    public int getVertexCount() {
+        normalize();
+        return vertexCount;
+    }
+
+    public int getEdgeCount() {
+        normalize();
+        return edgeCount;
+    }
+
+    public Collection<Pair<OrderedSwap, Integer>> getVertices() {
+        normalize();
+        List<Pair<OrderedSwap, Integer>> swaps = new ArrayList<>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            swaps.add(swapIndexer.getSwap(vertices[i]));
+        }
+        return swaps;
+    }
+
+    public Collection<Pair<OrderedSwap, Integer>> getSuccessors(Pair<OrderedSwap, Integer> swap) {
+        normalize();
+        int source = swapIndexer.getSwapId(swap);
+        List<Pair<OrderedSwap, Integer>> successors = new ArrayList<>();
+        for (int e = firstEdgeOf(source); e < edgeCount && edgeSource(edges[e]) == source; e++) {
+            successors.add(swapIndexer.getSwap(edgeTarget(edges[e])));
+        }
+        return successors;
+    }
+
+    public int getPredecessorCount(Pair<OrderedSwap, Integer> swap) {
+        normalize();
+        int target = swapIndexer.getSwapId(swap);
+        int count = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            if (edgeTarget(edges[e]) == target) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return sorted swap ids of all vertices; must not be modified
+     */
+    int[] getVertexIds() {
+        normalize();
+        if (vertices.length != vertexCount) {
+            vertices = Arrays.copyOf(vertices, vertexCount);
+        }
+        return vertices;
+    }
+
+    /**
+     * @return sorted keys (see {@link #edgeKey(int, int)}) of all edges; must not be modified
+     */
+    long[] getEdgeKeys() {
+        normalize();
+        if (edges.length != edgeCount) {
+            edges = Arrays.copyOf(edges, edgeCount);
+        }
+        return edges;
+    }
+
+    private int firstEdgeOf(int source) {
+        int index = Arrays.binarySearch(edges, 0, edgeCount, edgeKey(source, 0));
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void normalize() {
+        if (!verticesNormalized) {
+            vertexCount = sortAndRemoveDuplicates(vertices, vertexCount);
+            sortedVertexCount = vertexCount;
+            appendedVertices = null;
+            verticesNormalized = true;
+        }
+        if (!edgesNormalized) {
+            edgeCount = sortAndRemoveDuplicates(edges, edgeCount);
+            sortedEdgeCount = edgeCount;
+            appendedEdges = null;
+            edgesNormalized = true;
+        }
+    }
+
+    private static int sortAndRemoveDuplicates(int[] array, int length) {
+        Arrays.sort(array, 0, length);
+        int newLength = 0;
+        for (int i = 0; i < length; i++) {
+            if (newLength == 0 || array[newLength - 1] != array[i]) {
+                array[newLength++] = array[i];
+            }
+        }
+        return newLength;
+    }
+
+    private static int sortAndRemoveDuplicates(long[] array, int length) {
+        Arrays.sort(array, 0, length);
+        int newLength = 0;
+        for (int i = 0; i < length; i++) {
+            if (newLength == 0 || array[newLength - 1] != array[i]) {
+                array[newLength++] = array[i];
+            }
+        }
+        return newLength;
+    }
+
+    /**
+     * @return true iff both graphs have the same vertices and the same edges
+     */
+    boolean isIdenticalTo(RealizationGraph other) {
+        normalize();
+        other.normalize();
+        if (vertexCount != other.vertexCount || edgeCount != other.edgeCount) {
+            return false;
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            if (vertices[i] != other.vertices[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            if (edges[i] != other.edges[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 128-bit hash of the sorted vertices and edges, in two independent halves of 64 bits.
+     * Identical graphs (see {@link #isIdenticalTo(RealizationGraph)}) have the same fingerprint.
+     */
+    long getFingerprintHigh() {
+        computeFingerprint();
+        return fingerprintHigh;
+    }
+
+    /**
+     * @see #getFingerprintHigh()
+     */
+    long getFingerprintLow() {
+        computeFingerprint();
+        return fingerprintLow;
+    }
+
+    private void computeFingerprint() {
+        if (hasFingerprint) {
+            return;
+        }
+        normalize();
+        long high = 0x243F6A8885A308D3L + vertexCount;
+        long low = 0x13198A2E03707344L + edgeCount;
+        for (int i = 0; i < vertexCount; i++) {
+            high = combineHash(high, vertices[i], 0x9E3779B97F4A7C15L);
+            low = combineHash(low, vertices[i], 0xC2B2AE3D27D4EB4FL);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            high = combineHash(high, edges[i], 0x9E3779B97F4A7C15L);
+            low = combineHash(low, edges[i], 0xC2B2AE3D27D4EB4FL);
+        }
+        fingerprintHigh = finalizeHash(high);
+        fingerprintLow = finalizeHash(low);
+        hasFingerprint = true;
+    }
+
+    private static long combineHash(long hash, long value, long multiplier) {
+        return Long.rotateLeft(hash ^ (value * multiplier), 31) * 0x165667B19E3779F9L;
+    }
+
+    /**
+     * Final mixing step of MurmurHash3 (fmix64).
+     */
+    private static long finalizeHash(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
 
     /**
      * This {@link RealizationGraph} instance must be acyclic - this is not checked!
@@ -20,7 +395,29 @@ public class RealizationGraph extends DirectedSparseGraph<Pair<OrderedSwap, Inte
      * @return
      */
     public int getHeight(LineSwapper correspondingLineSwapper) {
-        return this.getSwappingDiagramOfMinimumHeight(correspondingLineSwapper).getLayers().size();
+        return getHeight();
+    }
+
+    /**
+     * This {@link RealizationGraph} instance must be acyclic - this is not checked!
+     *
+     * @return
+     */
+    public int getHeight() {
+        normalize();
+        //longest path (counted in vertices) ending in each vertex; the edges are processed in a topological order of
+        //their sources
+        int[] layerOf = new int[swapIndexer.getNumberOfSwaps()];
+        int height = 0;
+        for (int swap : getTopologicalOrder()) {
+            int layer = layerOf[swap] + 1;
+            height = Math.max(height, layer);
+            for (int e = firstEdgeOf(swap); e < edgeCount && edgeSource(edges[e]) == swap; e++) {
+                int successor = edgeTarget(edges[e]);
+                layerOf[successor] = Math.max(layerOf[successor], layer);
+            }
+        }
+        return height;
     }
 
     /**
@@ -29,48 +426,122 @@ public class RealizationGraph extends DirectedSparseGraph<Pair<OrderedSwap, Inte
      * @return
      */
     public SwappingDiagram getSwappingDiagramOfMinimumHeight(LineSwapper correspondingLineSwapper) {
-        //map from a swap to its inDegree (for swaps with inDeg > 0)
-        Map<Pair<OrderedSwap, Integer>, Integer> swap2PredecessorCount = new LinkedHashMap<>();
+        normalize();
+        //inDegree of each swap
+        int[] predecessorCount = new int[swapIndexer.getNumberOfSwaps()];
+        for (int e = 0; e < edgeCount; e++) {
+            ++predecessorCount[edgeTarget(edges[e])];
+        }
         //swaps with inDegree = 0
-        List<Pair<OrderedSwap, Integer>> currentSources = new ArrayList<>();
-
-        for (Pair<OrderedSwap, Integer> swap : this.getVertices()) {
-            int predecessorCount = this.getPredecessorCount(swap);
-            if (predecessorCount == 0) {
-                currentSources.add(swap);
-            }
-            else {
-                swap2PredecessorCount.put(swap, predecessorCount);
+        List<Integer> currentSources = new ArrayList<>();
+        for (int i = 0; i < vertexCount; i++) {
+            if (predecessorCount[vertices[i]] == 0) {
+                currentSources.add(vertices[i]);
             }
         }
 
         SwappingDiagram swappingDiagram = new SwappingDiagram(correspondingLineSwapper.getNumberOfLines(),
                 correspondingLineSwapper.getFinalPermutation());
-        while (!swap2PredecessorCount.isEmpty()) {
+        while (!currentSources.isEmpty()) {
             //remove the vertices without predecessors, i.e., the sources - we do all theses swaps initially and simultaneously
             //this will be the current layer, which is added to the swappingDiagram
-            swappingDiagram.getLayers().add(currentSources);
+            List<Pair<OrderedSwap, Integer>> layer = new ArrayList<>(currentSources.size());
             //lower inDegree for swaps that are successors of the swaps that are added to the current layer
-            List<Pair<OrderedSwap, Integer>> newSources = new ArrayList<>();
-            for (Pair<OrderedSwap, Integer> swap : currentSources) {
-                for (Pair<OrderedSwap, Integer> successor : this.getSuccessors(swap)) {
-                    int inDeg = swap2PredecessorCount.get(successor);
-                    if (inDeg == 1) {
-                        swap2PredecessorCount.remove(successor);
+            List<Integer> newSources = new ArrayList<>();
+            for (int swap : currentSources) {
+                layer.add(swapIndexer.getSwap(swap));
+                for (int e = firstEdgeOf(swap); e < edgeCount && edgeSource(edges[e]) == swap; e++) {
+                    int successor = edgeTarget(edges[e]);
+                    if (--predecessorCount[successor] == 0) {
                         newSources.add(successor);
                     }
-                    else {
-                        swap2PredecessorCount.replace(successor, inDeg - 1);
-                    }
                 }
             }
+            swappingDiagram.getLayers().add(layer);
             currentSources = newSources;
         }
-        if (!currentSources.isEmpty()) {
-            swappingDiagram.getLayers().add(currentSources);
-        }
 
         return swappingDiagram;
     }
 
+    /**
+     * @return the swap ids of all vertices in a topological order (Kahn's algorithm); if the graph contains a cycle,
+     * the vertices on or behind a cycle are missing
+     */
+    int[] getTopologicalOrder() {
+        normalize();
+        int[] predecessorCount = new int[swapIndexer.getNumberOfSwaps()];
+        for (int e = 0; e < edgeCount; e++) {
+            ++predecessorCount[edgeTarget(edges[e])];
+        }
+        int[] order = new int[vertexCount];
+        int orderLength = 0;
+        for (int i = 0; i < vertexCount; i++) {
+            if (predecessorCount[vertices[i]] == 0) {
+                order[orderLength++] = vertices[i];
+            }
+        }
+        for (int next = 0; next < orderLength; next++) {
+            int swap = order[next];
+            for (int e = firstEdgeOf(swap); e < edgeCount && edgeSource(edges[e]) == swap; e++) {
+                int successor = edgeTarget(edges[e]);
+                if (--predecessorCount[successor] == 0) {
+                    order[orderLength++] = successor;
+                }
+            }
+        }
+        return orderLength == vertexCount ? order : Arrays.copyOf(order, orderLength);
+    }
+
+    /**
+     * The edges of the returned JUNG graph are numbered consecutively.
+     */
+    public DirectedSparseGraph<Pair<OrderedSwap, Integer>, Integer> toJungGraph() {
+        normalize();
+        DirectedSparseGraph<Pair<OrderedSwap, Integer>, Integer> jungGraph = new DirectedSparseGraph<>();
+        List<Pair<OrderedSwap, Integer>> swaps = new ArrayList<>(
+                Collections.<Pair<OrderedSwap, Integer>>nCopies(swapIndexer.getNumberOfSwaps(), null));
+        for (int i = 0; i < vertexCount; i++) {
+            swaps.set(vertices[i], swapIndexer.getSwap(vertices[i]));
+            jungGraph.addVertex(swaps.get(vertices[i]));
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            jungGraph.addEdge(e, swaps.get(edgeSource(edges[e])), swaps.get(edgeTarget(edges[e])));
+        }
+        return jungGraph;
+    }
+
+    /**
+     * Wraps a graph for hash-based sets: two keys are equal iff their graphs are identical.
+     * Hash code and first comparison use the fingerprints, so graphs are compared in full only if their fingerprints
+     * collide.
+     * The graph must not be modified while its key is in a set.
+     */
+    static final class Key {
+
+        private final RealizationGraph graph;
+
+        Key(RealizationGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            RealizationGraph otherGraph = ((Key) o).graph;
+            return graph.getFingerprintHigh() == otherGraph.getFingerprintHigh()
+                    && graph.getFingerprintLow() == otherGraph.getFingerprintLow()
+                    && graph.isIdenticalTo(otherGraph);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) graph.getFingerprintHigh();
+        }
+    }
 }
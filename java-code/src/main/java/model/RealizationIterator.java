@@ -0,0 +1,114 @@
+package model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates all realizations of a {@link LineSwapper} instance one after another by depth-first search over the
+ * realizations of the triplets, without storing them.
+ *
+ * One realization per triplet is pushed onto a {@link PartialRealization} (combinations closing a cycle are rejected
+ * right away); whenever all triplets have one, their combination is the next realization.
+ * Besides the partial realization, only the index of the next realization to try is kept per depth.
+ * Different combinations of triplet realizations are different realizations (each triplet realization is a total order
+ * of the swaps of its triplet), so no realization is returned twice.
+ */
+class RealizationIterator implements Iterator<RealizationGraph> {
+
+    private final List<List<RealizationGraph>> tripletRealizations;
+    private final int numberOfTriplets;
+    private final PartialRealization realization;
+
+    //per depth: the index of the realization of its triplet to try next
+    private final int[] nextRealizationAtDepth;
+    //number of triplets with a realization pushed
+    private int depth = 0;
+    private boolean isStarted = false;
+    private boolean isExhausted;
+    //a combination of all triplets is pushed that was not returned yet
+    private boolean hasCombination = false;
+
+    /**
+     * @param tripletRealizations
+     *      for each triplet the list of its realizations; the triplets are combined in this order
+     */
+    RealizationIterator(SwapIndexer swapIndexer, List<List<RealizationGraph>> tripletRealizations) {
+        this.tripletRealizations = tripletRealizations;
+        this.numberOfTriplets = tripletRealizations.size();
+        this.realization = new PartialRealization(swapIndexer);
+        this.nextRealizationAtDepth = new int[numberOfTriplets];
+        this.isExhausted = tripletRealizations.stream().anyMatch(List::isEmpty);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!hasCombination && !isExhausted) {
+            hasCombination = advance();
+        }
+        return hasCombination;
+    }
+
+    @Override
+    public RealizationGraph next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        hasCombination = false;
+        return realization.toRealizationGraph();
+    }
+
+    /**
+     * Skips the remaining realizations without building them.
+     * Stops early if cancellationToken is cancelled.
+     *
+     * @return number of realizations skipped
+     */
+    long countRemaining(CancellationToken cancellationToken) {
+        long count = 0;
+        while (!cancellationToken.isCancelled() && hasNext()) {
+            hasCombination = false;
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * @return true iff the next combination of all triplets is pushed; false if there is none (then the iterator is
+     * exhausted)
+     */
+    private boolean advance() {
+        if (isStarted && depth == numberOfTriplets) {
+            //continue behind the realization returned last
+            --depth;
+            if (depth >= 0) {
+                realization.pop();
+            }
+        }
+        isStarted = true;
+        while (depth >= 0) {
+            if (depth == numberOfTriplets) {
+                return true;
+            }
+            List<RealizationGraph> realizations = tripletRealizations.get(depth);
+            boolean isPushed = false;
+            while (!isPushed && nextRealizationAtDepth[depth] < realizations.size()) {
+                isPushed = realization.push(realizations.get(nextRealizationAtDepth[depth]++));
+            }
+            if (isPushed) {
+                ++depth;
+                if (depth < numberOfTriplets) {
+                    nextRealizationAtDepth[depth] = 0;
+                }
+            }
+            else {
+                --depth;
+                if (depth >= 0) {
+                    realization.pop();
+                }
+            }
+        }
+        isExhausted = true;
+        return false;
+    }
+}
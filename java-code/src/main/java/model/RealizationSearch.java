@@ -0,0 +1,538 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Backtracking search for one realization of a {@link LineSwapper} instance: one realization per triplet is chosen
+ * such that the combination of all of them is acyclic (and not higher than some bound).
+ *
+ * The realization built so far is a {@link PartialRealization}; going back in the search pops exactly the levels of
+ * the triplets that are taken back.
+ * In which order the triplets are chosen is determined by {@link LineSwapper.TripletOrder}.
+ *
+ * The search is conflict-directed: for every depth it collects the depths whose realizations are responsible for
+ * rejecting realizations there (the ones that contributed an edge of the closed cycle resp. of a too long path).
+ * If all realizations of a triplet are rejected, the search jumps back to the most recent responsible depth instead of
+ * the previous one, and the responsible combination of realizations is learnt as a nogood, which rejects a realization
+ * as soon as all other realizations of the nogood are chosen.
+ * Only subtrees without a solution are skipped, so the realization found is the same as with plain backtracking.
+ *
+ * The search can also be run in parallel: the subtrees below the realizations of the first triplets are then searched
+ * by fork-join tasks, each with a search of its own that replays the realizations chosen above its subtree.
+ *
+ * Before every step, the search checks its {@link CancellationToken} and gives up with what it has found so far.
+ */
+class RealizationSearch {
+
+    private static final int MAX_NOGOOD_SIZE = 8;
+    private static final int MAX_NUMBER_OF_NOGOODS = 1 << 16;
+    //number of subtrees per thread the parallel search splits into, such that work stealing can balance them
+    private static final int SUBTREES_PER_THREAD = 8;
+
+    //pools shared by all parallel searches with the same parallelism; idle workers terminate on their own
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final SwapIndexer swapIndexer;
+
+    private final List<List<RealizationGraph>> tripletRealizations;
+    private final int numberOfTriplets;
+    private final LineSwapper.TripletOrder tripletOrder;
+    private final PartialRealization realization;
+
+    //per depth: the triplet chosen there, its realizations in the order they are tried, and the next one to try
+    private final int[] tripletAtDepth;
+    private final int[][] candidatesAtDepth;
+    private final int[] candidateCountAtDepth;
+    private final int[] nextCandidateAtDepth;
+    private final boolean[] isPlaced;
+    //the depths responsible for rejected realizations at each depth
+    private final BitSet[] conflictSetAtDepth;
+
+    //per triplet: the index of the chosen realization (-1 if none) and the depth it was chosen at
+    private final int[] chosenRealization;
+    private final int[] depthOfTriplet;
+
+    //nogoods as (triplet, realization index) pairs, listed for each of their pairs by its literal id
+    private final int[] firstLiteralOfTriplet;
+    private final List<List<int[]>> nogoodsOfLiteral;
+    private int numberOfNogoods = 0;
+
+    //if set, the search stops as soon as it becomes true
+    private AtomicBoolean cancelled;
+    //the search stops as soon as it is cancelled, then it has timed out
+    private final CancellationToken cancellationToken;
+    private boolean timedOut = false;
+
+    /**
+     * @param tripletRealizations
+     *      for each triplet the list of its realizations; this is also the order of the triplets for
+     *      {@link LineSwapper.TripletOrder#STATIC}
+     */
+    RealizationSearch(SwapIndexer swapIndexer, List<List<RealizationGraph>> tripletRealizations,
+                      LineSwapper.TripletOrder tripletOrder, CancellationToken cancellationToken) {
+        this.swapIndexer = swapIndexer;
+        this.cancellationToken = cancellationToken;
+        this.tripletRealizations = tripletRealizations;
+        this.numberOfTriplets = tripletRealizations.size();
+        this.tripletOrder = tripletOrder;
+        this.realization = new PartialRealization(swapIndexer);
+        this.tripletAtDepth = new int[numberOfTriplets];
+        this.candidatesAtDepth = new int[numberOfTriplets][];
+        this.candidateCountAtDepth = new int[numberOfTriplets];
+        this.nextCandidateAtDepth = new int[numberOfTriplets];
+        this.isPlaced = new boolean[numberOfTriplets];
+        this.conflictSetAtDepth = new BitSet[numberOfTriplets];
+        for (int depth = 0; depth < numberOfTriplets; depth++) {
+            conflictSetAtDepth[depth] = new BitSet();
+        }
+        this.chosenRealization = new int[numberOfTriplets];
+        Arrays.fill(chosenRealization, -1);
+        this.depthOfTriplet = new int[numberOfTriplets];
+        this.firstLiteralOfTriplet = new int[numberOfTriplets + 1];
+        for (int triplet = 0; triplet < numberOfTriplets; triplet++) {
+            firstLiteralOfTriplet[triplet + 1] = firstLiteralOfTriplet[triplet] + tripletRealizations.get(triplet).size();
+        }
+        this.nogoodsOfLiteral = new ArrayList<>(
+                Collections.<List<int[]>>nCopies(firstLiteralOfTriplet[numberOfTriplets], null));
+    }
+
+    SolveOutcome<RealizationGraph> computeOneRealization(int maxHeight) {
+        if (hasTripletWithoutRealization()) {
+            return SolveOutcome.infeasible();
+        }
+        return toOutcome(search(0, maxHeight), timedOut);
+    }
+
+    /**
+     * @return a pool with this parallelism shared by all parallel searches asking for it
+     */
+    static ForkJoinPool getSharedPool(int parallelism) {
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * Like {@link #computeOneRealization(int)}, but the subtrees below the realizations of the first triplets are
+     * searched by parallel tasks in pool; the first one finding a realization cancels the others.
+     */
+    SolveOutcome<RealizationGraph> computeOneRealizationInParallel(int maxHeight, ForkJoinPool pool) {
+        if (hasTripletWithoutRealization()) {
+            return SolveOutcome.infeasible();
+        }
+        RealizationGraph result = pool.invoke(new SubtreeTask(new int[0],
+                SUBTREES_PER_THREAD * pool.getParallelism(), maxHeight, new AtomicBoolean(false)));
+        //a realization found solves it even if the deadline passed meanwhile; without one, the tasks gave up only if
+        //they were done or cancelled
+        return toOutcome(result, result == null && cancellationToken.isCancelled());
+    }
+
+    /**
+     * Branch and bound: a single search, whose height bound is tightened whenever a realization is found.
+     * If it times out, the result is the realization of minimum height found so far.
+     */
+    SolveOutcome<RealizationGraph> computeOneMinHeightRealization() {
+        if (hasTripletWithoutRealization()) {
+            return SolveOutcome.infeasible();
+        }
+        return toOutcome(search(0, Integer.MAX_VALUE, true), timedOut);
+    }
+
+    private static SolveOutcome<RealizationGraph> toOutcome(RealizationGraph result, boolean timedOut) {
+        if (timedOut) {
+            return SolveOutcome.timedOut(result);
+        }
+        return result == null ? SolveOutcome.infeasible() : SolveOutcome.solved(result);
+    }
+
+    private boolean hasTripletWithoutRealization() {
+        for (List<RealizationGraph> realizationsOfOneTriplet : tripletRealizations) {
+            if (realizationsOfOneTriplet.isEmpty()) {
+                //not even for that triplet there is a realization
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches below the realizations already chosen at the depths smaller than baseDepth; these are never taken back.
+     *
+     * @return null if no realization exists in this subtree or if the search was cancelled
+     */
+    private RealizationGraph search(int baseDepth, int maxHeight) {
+        return search(baseDepth, maxHeight, false);
+    }
+
+    /**
+     * @param minimizeHeight
+     *      if true, the search goes on after finding a realization, with the bound tightened to below its height
+     * @return the last realization found; null if there is none in this subtree or if the search was cancelled resp.
+     * timed out before finding one
+     */
+    private RealizationGraph search(int baseDepth, int maxHeight, boolean minimizeHeight) {
+        RealizationGraph bestRealization = null;
+        int depth = baseDepth;
+        if (depth < numberOfTriplets) {
+            enterDepth(depth, maxHeight);
+        }
+        while (true) {
+            if (cancelled != null && cancelled.get()) {
+                return bestRealization;
+            }
+            if (cancellationToken.isCancelled()) {
+                timedOut = true;
+                return bestRealization;
+            }
+            if (depth == numberOfTriplets) {
+                bestRealization = realization.toRealizationGraph();
+                if (!minimizeHeight) {
+                    return bestRealization;
+                }
+                //the realizations contributing to a longest path rule out the current one under the tightened bound;
+                //everything learnt so far stays valid as the bound only decreases
+                maxHeight = realization.getHeight() - 1;
+                realization.recordLongestPathConflict();
+                BitSet conflictSet = new BitSet();
+                int[] conflictLevels = realization.getConflictLevels();
+                for (int i = 0; i < realization.getConflictLevelCount(); i++) {
+                    conflictSet.set(conflictLevels[i]);
+                }
+                learnNogood(conflictSet);
+                depth = backjump(depth, conflictSet, baseDepth);
+                if (depth < 0) {
+                    return bestRealization;
+                }
+                continue;
+            }
+            //try the remaining realizations of the triplet at this depth
+            int triplet = tripletAtDepth[depth];
+            while (nextCandidateAtDepth[depth] < candidateCountAtDepth[depth]) {
+                int candidate = candidatesAtDepth[depth][nextCandidateAtDepth[depth]++];
+                if (apply(triplet, candidate, maxHeight, conflictSetAtDepth[depth])) {
+                    chosenRealization[triplet] = candidate;
+                    depthOfTriplet[triplet] = depth;
+                    break;
+                }
+            }
+            //success
+            if (chosenRealization[triplet] >= 0) {
+                ++depth;
+                if (depth < numberOfTriplets) {
+                    enterDepth(depth, maxHeight);
+                }
+                continue;
+            }
+            //fail -> all realizations of this triplet are rejected because of the realizations in its conflict set
+            BitSet conflictSet = conflictSetAtDepth[depth];
+            learnNogood(conflictSet);
+            isPlaced[triplet] = false;
+            depth = backjump(depth, conflictSet, baseDepth);
+            //total fail -> no (better) realization
+            if (depth < 0) {
+                return bestRealization;
+            }
+        }
+    }
+
+    /**
+     * Goes back to the most recent depth of conflictSet, the ones in between cannot resolve the conflict;
+     * the search resumes with the next realization there.
+     *
+     * @return the new depth; -1 if it would be smaller than baseDepth
+     */
+    private int backjump(int depth, BitSet conflictSet, int baseDepth) {
+        int backjumpDepth = conflictSet.length() - 1;
+        if (backjumpDepth < baseDepth) {
+            return -1;
+        }
+        while (depth > backjumpDepth) {
+            --depth;
+            realization.pop();
+            chosenRealization[tripletAtDepth[depth]] = -1;
+            if (depth > backjumpDepth) {
+                isPlaced[tripletAtDepth[depth]] = false;
+            }
+        }
+        conflictSet.clear(backjumpDepth);
+        conflictSetAtDepth[backjumpDepth].or(conflictSet);
+        return backjumpDepth;
+    }
+
+    /**
+     * Applies the realization to the partial realization if this violates no nogood and the result is acyclic and not
+     * higher than maxHeight.
+     *
+     * @param conflictSet
+     *      if not null, the depths responsible for a rejection are added
+     * @return success; if false, nothing is changed
+     */
+    private boolean apply(int triplet, int realizationIndex, int maxHeight, BitSet conflictSet) {
+        List<int[]> nogoods = nogoodsOfLiteral.get(firstLiteralOfTriplet[triplet] + realizationIndex);
+        if (nogoods != null) {
+            for (int[] nogood : nogoods) {
+                if (isViolated(nogood, triplet)) {
+                    if (conflictSet != null) {
+                        for (int i = 0; i < nogood.length; i += 2) {
+                            if (nogood[i] != triplet) {
+                                conflictSet.set(depthOfTriplet[nogood[i]]);
+                            }
+                        }
+                    }
+                    return false;
+                }
+            }
+        }
+        if (!realization.push(tripletRealizations.get(triplet).get(realizationIndex), maxHeight)) {
+            if (conflictSet != null) {
+                int[] conflictLevels = realization.getConflictLevels();
+                for (int i = 0; i < realization.getConflictLevelCount(); i++) {
+                    conflictSet.set(conflictLevels[i]);
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true iff all realizations of the nogood except for the one of triplet are chosen
+     */
+    private boolean isViolated(int[] nogood, int triplet) {
+        for (int i = 0; i < nogood.length; i += 2) {
+            if (nogood[i] != triplet && chosenRealization[nogood[i]] != nogood[i + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The realizations chosen at the depths of conflictSet do not allow any realization of some other triplet, so
+     * they are never chosen together again.
+     */
+    private void learnNogood(BitSet conflictSet) {
+        int size = conflictSet.cardinality();
+        if (size == 0 || size > MAX_NOGOOD_SIZE || numberOfNogoods == MAX_NUMBER_OF_NOGOODS) {
+            return;
+        }
+        int[] nogood = new int[2 * size];
+        int i = 0;
+        for (int depth = conflictSet.nextSetBit(0); depth >= 0; depth = conflictSet.nextSetBit(depth + 1)) {
+            nogood[i++] = tripletAtDepth[depth];
+            nogood[i++] = chosenRealization[tripletAtDepth[depth]];
+        }
+        for (i = 0; i < nogood.length; i += 2) {
+            int literal = firstLiteralOfTriplet[nogood[i]] + nogood[i + 1];
+            List<int[]> nogoods = nogoodsOfLiteral.get(literal);
+            if (nogoods == null) {
+                nogoods = new ArrayList<>(2);
+                nogoodsOfLiteral.set(literal, nogoods);
+            }
+            nogoods.add(nogood);
+        }
+        ++numberOfNogoods;
+    }
+
+    /**
+     * Chooses the given realization of triplet at depth, without alternatives to go back to.
+     *
+     * @return success
+     */
+    private boolean place(int depth, int triplet, int realizationIndex, int maxHeight) {
+        tripletAtDepth[depth] = triplet;
+        isPlaced[triplet] = true;
+        candidateCountAtDepth[depth] = 0;
+        nextCandidateAtDepth[depth] = 0;
+        conflictSetAtDepth[depth].clear();
+        if (!apply(triplet, realizationIndex, maxHeight, null)) {
+            return false;
+        }
+        chosenRealization[triplet] = realizationIndex;
+        depthOfTriplet[triplet] = depth;
+        return true;
+    }
+
+    private void enterDepth(int depth, int maxHeight) {
+        conflictSetAtDepth[depth].clear();
+        chooseTriplet(depth, maxHeight);
+    }
+
+    /**
+     * Determines the triplet to be placed at depth and the realizations of it to be tried.
+     */
+    private void chooseTriplet(int depth, int maxHeight) {
+        if (tripletOrder == LineSwapper.TripletOrder.STATIC) {
+            int size = tripletRealizations.get(depth).size();
+            int[] candidates = ensureCapacity(candidatesAtDepth[depth], size);
+            for (int i = 0; i < size; i++) {
+                candidates[i] = i;
+            }
+            setTriplet(depth, depth, candidates, size);
+            return;
+        }
+
+        //most constrained first: the triplet with the fewest realizations compatible with the partial realization;
+        //ties are broken by the number of swaps shared with the already placed triplets
+        int bestTriplet = -1;
+        int[] bestCandidates = null;
+        int bestCount = Integer.MAX_VALUE;
+        int bestSharedSwaps = -1;
+        int[] candidates = new int[0];
+        for (int triplet = 0; triplet < numberOfTriplets && bestCount > 0; triplet++) {
+            if (isPlaced[triplet]) {
+                continue;
+            }
+            List<RealizationGraph> realizations = tripletRealizations.get(triplet);
+            int sharedSwaps = 0;
+            for (int swap : realizations.get(0).getVertexIds()) {
+                if (realization.containsVertex(swap)) {
+                    ++sharedSwaps;
+                }
+            }
+            candidates = ensureCapacity(candidates, realizations.size());
+            int count = 0;
+            for (int i = 0; i < realizations.size(); i++) {
+                //counting further cannot make this triplet better than the best one
+                if (count > bestCount || (count == bestCount && sharedSwaps <= bestSharedSwaps)) {
+                    break;
+                }
+                if (apply(triplet, i, maxHeight, null)) {
+                    realization.pop();
+                    candidates[count++] = i;
+                }
+            }
+            if (count < bestCount || (count == bestCount && sharedSwaps > bestSharedSwaps)) {
+                bestTriplet = triplet;
+                bestCount = count;
+                bestSharedSwaps = sharedSwaps;
+                int[] swapBuffer = bestCandidates;
+                bestCandidates = candidates;
+                candidates = swapBuffer == null ? new int[0] : swapBuffer;
+            }
+        }
+        //the rejected realizations are tried again in the end, only for collecting the conflicts
+        int size = tripletRealizations.get(bestTriplet).size();
+        int[] allCandidates = Arrays.copyOf(bestCandidates, size);
+        int numberOfCandidates = bestCount;
+        for (int i = 0, j = 0; i < size; i++) {
+            if (j < bestCount && bestCandidates[j] == i) {
+                ++j;
+            }
+            else {
+                allCandidates[numberOfCandidates++] = i;
+            }
+        }
+        setTriplet(depth, bestTriplet, allCandidates, size);
+    }
+
+    private void setTriplet(int depth, int triplet, int[] candidates, int numberOfCandidates) {
+        tripletAtDepth[depth] = triplet;
+        isPlaced[triplet] = true;
+        candidatesAtDepth[depth] = candidates;
+        candidateCountAtDepth[depth] = numberOfCandidates;
+        nextCandidateAtDepth[depth] = 0;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array == null || array.length < capacity) {
+            return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+        }
+        return array;
+    }
+
+    /**
+     * Searches the subtree below the given realizations (pairs of triplet and realization index, one per depth).
+     * While its budget allows, it splits into one subtask per realization of the next triplet.
+     */
+    private class SubtreeTask extends RecursiveTask<RealizationGraph> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] prefix;
+        private final int budget;
+        private final int maxHeight;
+        private final AtomicBoolean found;
+
+        SubtreeTask(int[] prefix, int budget, int maxHeight, AtomicBoolean found) {
+            this.prefix = prefix;
+            this.budget = budget;
+            this.maxHeight = maxHeight;
+            this.found = found;
+        }
+
+        @Override
+        protected RealizationGraph compute() {
+            if (found.get() || cancellationToken.isCancelled()) {
+                return null;
+            }
+            RealizationSearch search = new RealizationSearch(swapIndexer, tripletRealizations, tripletOrder,
+                    cancellationToken);
+            search.cancelled = found;
+            int depth = 0;
+            while (depth < prefix.length / 2) {
+                if (!search.place(depth, prefix[2 * depth], prefix[2 * depth + 1], maxHeight)) {
+                    return null;
+                }
+                ++depth;
+            }
+
+            int[] subtreePrefix = prefix;
+            while (budget > 1 && depth < numberOfTriplets) {
+                search.enterDepth(depth, maxHeight);
+                int triplet = search.tripletAtDepth[depth];
+                //only the realizations compatible with the prefix get a subtree
+                int[] candidates = new int[search.candidateCountAtDepth[depth]];
+                int numberOfCandidates = 0;
+                for (int i = 0; i < candidates.length; i++) {
+                    int candidate = search.candidatesAtDepth[depth][i];
+                    if (search.apply(triplet, candidate, maxHeight, null)) {
+                        search.realization.pop();
+                        candidates[numberOfCandidates++] = candidate;
+                    }
+                }
+                if (numberOfCandidates == 0) {
+                    return null;
+                }
+                if (numberOfCandidates == 1) {
+                    //nothing to split, go down directly
+                    if (!search.place(depth, triplet, candidates[0], maxHeight)) {
+                        return null;
+                    }
+                    subtreePrefix = Arrays.copyOf(subtreePrefix, 2 * depth + 2);
+                    subtreePrefix[2 * depth] = triplet;
+                    subtreePrefix[2 * depth + 1] = candidates[0];
+                    ++depth;
+                    continue;
+                }
+                List<SubtreeTask> subtasks = new ArrayList<>(numberOfCandidates);
+                for (int i = 0; i < numberOfCandidates; i++) {
+                    int[] childPrefix = Arrays.copyOf(subtreePrefix, 2 * depth + 2);
+                    childPrefix[2 * depth] = triplet;
+                    childPrefix[2 * depth + 1] = candidates[i];
+                    subtasks.add(new SubtreeTask(childPrefix, Math.max(1, budget / numberOfCandidates), maxHeight,
+                            found));
+                }
+                for (SubtreeTask subtask : invokeAll(subtasks)) {
+                    RealizationGraph result = subtask.join();
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            }
+
+            RealizationGraph result = search.search(depth, maxHeight);
+            if (result != null) {
+                found.set(true);
+            }
+            return result;
+        }
+    }
+}
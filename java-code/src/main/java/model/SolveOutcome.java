@@ -0,0 +1,74 @@
+package model;
+
+/**
+ * Result of a solve method of {@link LineSwapper} that was given a {@link CancellationToken}.
+ *
+ * @param <T>
+ *      type of the result, e.g., one realization or all realizations
+ */
+public class SolveOutcome<T> {
+
+    public enum Status {
+        /**
+         * The result is complete.
+         */
+        SOLVED,
+        /**
+         * There is no realization (of the required height); the result is null.
+         */
+        INFEASIBLE,
+        /**
+         * The token was cancelled before the search was complete; the result is the best one found so far, null if
+         * there is none.
+         */
+        TIMED_OUT
+    }
+
+    private final Status status;
+    private final T result;
+
+    SolveOutcome(Status status, T result) {
+        this.status = status;
+        this.result = result;
+    }
+
+    static <T> SolveOutcome<T> solved(T result) {
+        return new SolveOutcome<>(Status.SOLVED, result);
+    }
+
+    static <T> SolveOutcome<T> infeasible() {
+        return new SolveOutcome<>(Status.INFEASIBLE, null);
+    }
+
+    static <T> SolveOutcome<T> timedOut(T bestResultSoFar) {
+        return new SolveOutcome<>(Status.TIMED_OUT, bestResultSoFar);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return see {@link Status}
+     */
+    public T getResult() {
+        return result;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    public boolean isInfeasible() {
+        return status == Status.INFEASIBLE;
+    }
+
+    public boolean isTimedOut() {
+        return status == Status.TIMED_OUT;
+    }
+
+    @Override
+    public String toString() {
+        return status + (result == null ? "" : ": " + result);
+    }
+}
@@ -0,0 +1,118 @@
+package model;
+
+import org.javatuples.Pair;
+
+/**
+ * Dense numbering of all swaps of one {@link LineSwapper} instance.
+ * The swaps of the line pair (i,j) with i < j get the consecutive ids starting at the offset of the rank of (i,j);
+ * within this range, the t-th swap of i and j gets the id offset + t.
+ * As all lines start in the order of their line numbers, the t-th swap is the ordered swap (i,j) if t is even and
+ * the ordered swap (j,i) if t is odd, in both cases with occurrence index t / 2
+ * (compare with the vertices of {@link RealizationGraph}).
+ */
+public class SwapIndexer {
+
+    private final int numberOfLines;
+    /**
+     * offset of the first swap of each line pair (by rank), the last entry is the total number of swaps
+     */
+    private final int[] pairOffsets;
+    /**
+     * for each swap id: the rank of its line pair
+     */
+    private final int[] pairRankOfSwap;
+    private final int[] smallerLineOfPair;
+    private final int[] greaterLineOfPair;
+
+    public SwapIndexer(int[][] inputMatrix) {
+        this.numberOfLines = inputMatrix.length;
+        int numberOfPairs = numberOfLines * (numberOfLines - 1) / 2;
+        this.pairOffsets = new int[numberOfPairs + 1];
+        this.smallerLineOfPair = new int[numberOfPairs];
+        this.greaterLineOfPair = new int[numberOfPairs];
+        int rank = 0;
+        for (int i = 0; i < numberOfLines - 1; i++) {
+            for (int j = i + 1; j < numberOfLines; j++) {
+                smallerLineOfPair[rank] = i;
+                greaterLineOfPair[rank] = j;
+                //use only absolute values for the matrices
+                pairOffsets[rank + 1] = pairOffsets[rank] + Math.abs(inputMatrix[i][j]);
+                ++rank;
+            }
+        }
+        this.pairRankOfSwap = new int[pairOffsets[numberOfPairs]];
+        for (int r = 0; r < numberOfPairs; r++) {
+            for (int id = pairOffsets[r]; id < pairOffsets[r + 1]; id++) {
+                pairRankOfSwap[id] = r;
+            }
+        }
+    }
+
+    public int getNumberOfLines() {
+        return numberOfLines;
+    }
+
+    public int getNumberOfSwaps() {
+        return pairRankOfSwap.length;
+    }
+
+    public int getPairRank(int line0, int line1) {
+        int i = Math.min(line0, line1);
+        int j = Math.max(line0, line1);
+        return i * (2 * numberOfLines - i - 1) / 2 + (j - i - 1);
+    }
+
+    public int getNumberOfSwaps(int line0, int line1) {
+        int rank = getPairRank(line0, line1);
+        return pairOffsets[rank + 1] - pairOffsets[rank];
+    }
+
+    /**
+     * @return id of the first swap of line0 and line1; their t-th swap has the id offset + t
+     */
+    public int getPairOffset(int line0, int line1) {
+        return pairOffsets[getPairRank(line0, line1)];
+    }
+
+    /**
+     * @param leftLine
+     *      line that is left before the swap
+     * @param rightLine
+     *      line that is right before the swap
+     * @param occurrence
+     *      occurrence index of this ordered swap
+     */
+    public int getSwapId(int leftLine, int rightLine, int occurrence) {
+        int rank = getPairRank(leftLine, rightLine);
+        int t = 2 * occurrence + (leftLine < rightLine ? 0 : 1);
+        if (occurrence < 0 || t >= pairOffsets[rank + 1] - pairOffsets[rank]) {
+            throw new IllegalArgumentException("There is no " + occurrence + "-th swap (" + leftLine + ", " +
+                    rightLine + ") in this instance.");
+        }
+        return pairOffsets[rank] + t;
+    }
+
+    public int getSwapId(Pair<OrderedSwap, Integer> swap) {
+        return getSwapId(swap.getValue0().getValue0().getLineNumber(), swap.getValue0().getValue1().getLineNumber(),
+                swap.getValue1());
+    }
+
+    public int getLeftLine(int swapId) {
+        int rank = pairRankOfSwap[swapId];
+        return (swapId - pairOffsets[rank]) % 2 == 0 ? smallerLineOfPair[rank] : greaterLineOfPair[rank];
+    }
+
+    public int getRightLine(int swapId) {
+        int rank = pairRankOfSwap[swapId];
+        return (swapId - pairOffsets[rank]) % 2 == 0 ? greaterLineOfPair[rank] : smallerLineOfPair[rank];
+    }
+
+    public int getOccurrence(int swapId) {
+        return (swapId - pairOffsets[pairRankOfSwap[swapId]]) / 2;
+    }
+
+    public Pair<OrderedSwap, Integer> getSwap(int swapId) {
+        return new Pair<>(new OrderedSwap(new Line(getLeftLine(swapId)), new Line(getRightLine(swapId))),
+                getOccurrence(swapId));
+    }
+}
@@ -1,11 +1,46 @@
 package model;
 
-import org.javatuples.Triplet;
-
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Realizations of triplets of lines by their numbers of swaps, computed once and shared by all threads.
+ *
+ * Looking up a triplet takes no lock: the entries are in a concurrent map keyed by the three numbers packed into one
+ * long (see {@link #packCounts(int, int, int)}).
+ * The realizations of an entry are computed by the first thread asking for them, while holding the lock of just this
+ * entry, and then published through a volatile field, so later lookups do not synchronize.
+ * Whether a triplet is realizable is looked up in a {@link TripletFeasibilityTable} if it covers the triplet.
+ *
+ * The realizations are bounded by a memory budget (see {@link #setRealizationMemoryBudget(long)}): if the ones kept
+ * exceed it, the least recently used ones are dropped until the rest takes at most three quarters of it, so the entries
+ * are scanned for this only now and then; dropped ones are computed again when they are asked for next time.
+ * Recent use is told apart by the number of computations before, so looking up computed realizations writes to no
+ * shared counter.
+ * The entries themselves, with their numbers of swaps and whether they are realizable, are kept for good.
+ *
+ * Realizations covered by a {@link TripletRealizationFile} (see {@link #useRealizationFile(Path)}) are mapped from it
+ * instead of being computed; they do not count towards the memory budget.
+ * If the system property {@value #REALIZATION_FILE_PROPERTY} is set, the file at this path is used from the start.
+ */
 public class SwapTripletRegistry {
 
+    //number of bits per count in a packed key
+    private static final int BITS_PER_COUNT = 21;
+    //bound of the feasibility table built if none is set
+    private static final int DEFAULT_FEASIBILITY_TABLE_BOUND = 127;
+    //share of the maximum heap size the realizations may take if no budget is set
+    private static final int DEFAULT_MEMORY_BUDGET_DIVISOR = 4;
+    //share of the memory budget freed in addition when evicting
+    private static final int EVICTION_HEADROOM_DIVISOR = 4;
+
+    public static final String REALIZATION_FILE_PROPERTY = "model.SwapTripletRegistry.realizationFile";
+
     public static enum TripletSwap {
         SWAP_01, SWAP_02, SWAP_12,
         SWAP_10, SWAP_20, SWAP_21;
@@ -17,8 +52,10 @@ public class SwapTripletRegistry {
         private int count02swaps;
         private int count12swaps;
 
-        public List<List<TripletSwap>> realizations;
-        private Boolean isRealizable = null;
+        private volatile PackedTripletRealizations realizations;
+        private volatile Boolean isRealizable = null;
+        //value of ACCESS_CLOCK when the realizations were asked for last time (it counts the computations only)
+        private volatile long lastAccess;
 
         public SwapTriplet(int count01swaps, int count02swaps, int count12swaps) {
             this.count01swaps = count01swaps;
@@ -38,44 +75,91 @@ public class SwapTripletRegistry {
             return count12swaps;
         }
 
-        public synchronized List<List<TripletSwap>> getRealizations() {
-            if (realizations == null) {
-                realizations = new ArrayList<>();
-                //special case: there is a realization of nothing, i.e. doing nothing
-                if (get01swaps() == 0 && get02swaps() == 0 && get12swaps() == 0) {
-                    realizations.add(Collections.EMPTY_LIST);
-                }
-                //base case: perform a possible swap and use data from what's left
-                if (get01swaps() > 0) {
-                    //changed order because we perform an initial 0-1 swap and now 0 is the new 1 and the other way round
-                    //therefore we also lower the number of 0-1 swaps by one
-                    for (List<TripletSwap> baseRealization : SwapTripletRegistry.getRealizations(get01swaps() - 1, get12swaps(), get02swaps())) {
-                        ArrayList<TripletSwap> newRealization = new ArrayList<>(Collections.singleton(TripletSwap.SWAP_01));
-                        newRealization.addAll(baseRealization);
-                        interchangeTwoSwaps(newRealization, TripletSwap.SWAP_01, TripletSwap.SWAP_10, 1);
-                        interchangeTwoSwaps(newRealization, TripletSwap.SWAP_02, TripletSwap.SWAP_12, 1);
-                        interchangeTwoSwaps(newRealization, TripletSwap.SWAP_20, TripletSwap.SWAP_21, 1);
-                        realizations.add(newRealization);
-                    }
-                }
-                if (get12swaps() > 0) {
-                    //changed order because we perform an initial 1-2 swap and now 1 is the new 2 and the other way round
-                    //therefore we also lower the number of 1-2 swaps by one
-                    for (List<TripletSwap> baseRealization : SwapTripletRegistry.getRealizations(get02swaps(), get01swaps(), get12swaps() - 1)) {
-                        ArrayList<TripletSwap> newRealization = new ArrayList<>(Collections.singleton(TripletSwap.SWAP_12));
-                        newRealization.addAll(baseRealization);
-                        interchangeTwoSwaps(newRealization, TripletSwap.SWAP_12, TripletSwap.SWAP_21, 1);
-                        interchangeTwoSwaps(newRealization, TripletSwap.SWAP_01, TripletSwap.SWAP_02, 1);
-                        interchangeTwoSwaps(newRealization, TripletSwap.SWAP_10, TripletSwap.SWAP_20, 1);
-                        realizations.add(newRealization);
-                    }
+        public PackedTripletRealizations getRealizations() {
+            long accessTime = ACCESS_CLOCK.get();
+            if (lastAccess != accessTime) {
+                lastAccess = accessTime;
+            }
+            PackedTripletRealizations realizations = this.realizations;
+            if (realizations != null) {
+                HITS.increment();
+                return realizations;
+            }
+            boolean isComputed = false;
+            //only threads asking for this very triplet wait here
+            synchronized (this) {
+                realizations = this.realizations;
+                if (realizations == null) {
+                    realizations = computeRealizations();
+                    lastAccess = ACCESS_CLOCK.incrementAndGet();
+                    this.realizations = realizations;
+                    RESIDENT_BYTES.addAndGet(realizations.getSizeInBytes());
+                    isComputed = true;
                 }
             }
+            if (isComputed) {
+                MISSES.increment();
+                evictIfOverBudget();
+            }
+            else {
+                HITS.increment();
+            }
+            return realizations;
+        }
 
+        /**
+         * Drops the realizations (if computed), they are computed again on demand.
+         * Takes no lock of the entry, such that evicting never waits for a computation: only the thread holding
+         * EVICTION_LOCK sets computed realizations to null, and computing threads only set null ones.
+         *
+         * @return number of bytes freed
+         */
+        private long evictRealizations() {
+            PackedTripletRealizations realizations = this.realizations;
+            if (realizations == null) {
+                return 0;
+            }
+            this.realizations = null;
+            RESIDENT_BYTES.addAndGet(-realizations.getSizeInBytes());
+            return realizations.getSizeInBytes();
+        }
+
+        /**
+         * The smaller triplets it uses have fewer swaps, so the locks of the entries are always taken in order of
+         * decreasing numbers of swaps and cannot deadlock.
+         */
+        private PackedTripletRealizations computeRealizations() {
+            TripletRealizationFile file = realizationFile;
+            if (file != null && file.covers(get01swaps(), get02swaps(), get12swaps())) {
+                return file.getRealizations(get01swaps(), get02swaps(), get12swaps());
+            }
+            //special case: there is a realization of nothing, i.e. doing nothing
+            if (get01swaps() == 0 && get02swaps() == 0 && get12swaps() == 0) {
+                return PackedTripletRealizations.ofEmptyRealization();
+            }
+            //base case: perform a possible swap and use data from what's left
+            //changed order because after an initial 0-1 swap, 0 is the new 1 and the other way round
+            //therefore we also lower the number of 0-1 swaps by one; likewise for an initial 1-2 swap
+            PackedTripletRealizations after01swap = get01swaps() > 0 ?
+                    getPackedRealizations(get01swaps() - 1, get12swaps(), get02swaps()) : null;
+            PackedTripletRealizations after12swap = get12swaps() > 0 ?
+                    getPackedRealizations(get02swaps(), get01swaps(), get12swaps() - 1) : null;
+            int numberOfRealizations = (after01swap == null ? 0 : after01swap.size()) +
+                    (after12swap == null ? 0 : after12swap.size());
+            PackedTripletRealizations realizations = new PackedTripletRealizations(
+                    get01swaps() + get02swaps() + get12swaps(), numberOfRealizations);
+            for (int i = 0; after01swap != null && i < after01swap.size(); i++) {
+                realizations.addWithFirstSwap(PackedTripletRealizations.CODE_01, after01swap, i);
+            }
+            for (int i = 0; after12swap != null && i < after12swap.size(); i++) {
+                realizations.addWithFirstSwap(PackedTripletRealizations.CODE_12, after12swap, i);
+            }
             return realizations;
         }
 
         public boolean isRealizable() {
+            //computing it twice in parallel does no harm, so no lock here
+            Boolean isRealizable = this.isRealizable;
             if (isRealizable == null) {
                 if (get01swaps() == 0 && get02swaps() == 0 && get12swaps() == 0) {
                     isRealizable = true;
@@ -89,39 +173,217 @@ public class SwapTripletRegistry {
                 if (isRealizable == null) {
                     isRealizable = false;
                 }
+                this.isRealizable = isRealizable;
             }
             return isRealizable;
         }
+    }
 
-        private void interchangeTwoSwaps(List<TripletSwap> list, TripletSwap tripletSwapA, TripletSwap tripletSwapB, int startIndex) {
-            for (int i = startIndex; i < list.size(); ++i) {
-                if (list.get(i) == tripletSwapA) {
-                    list.set(i, tripletSwapB);
-                }
-                else if (list.get(i) == tripletSwapB) {
-                    list.set(i, tripletSwapA);
-                }
+
+    private static final ConcurrentHashMap<Long, SwapTriplet> OCCURRENCES_2_SWAP_TRIPLET = new ConcurrentHashMap<>();
+
+    private static final AtomicLong ACCESS_CLOCK = new AtomicLong();
+    private static final AtomicLong RESIDENT_BYTES = new AtomicLong();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTIONS = new LongAdder();
+    //only one thread evicts at a time
+    private static final Object EVICTION_LOCK = new Object();
+
+    private static volatile long realizationMemoryBudget = Runtime.getRuntime().maxMemory() /
+            DEFAULT_MEMORY_BUDGET_DIVISOR;
+
+    private static volatile TripletRealizationFile realizationFile;
+
+    static {
+        String path = System.getProperty(REALIZATION_FILE_PROPERTY);
+        if (path != null) {
+            try {
+                useRealizationFile(Paths.get(path));
+            } catch (IOException e) {
+                //not fatal, the realizations are computed then
+                System.err.println("Could not use the triplet realization file " + path + ": " + e.getMessage());
             }
         }
     }
 
-
-    private static LinkedHashMap<Triplet<Integer, Integer, Integer>, SwapTriplet> OCCURRENCES_2_SWAP_TRIPLET = new LinkedHashMap<>();
+    private static volatile TripletFeasibilityTable feasibilityTable;
 
     public static boolean isRealizable(int occ01, int occ02, int occ12) {
+        TripletFeasibilityTable table = getFeasibilityTable();
+        if (table.covers(occ01, occ02, occ12)) {
+            return table.isRealizable(occ01, occ02, occ12);
+        }
         return findSwapTriplet(occ01, occ02, occ12).isRealizable();
+    }
+
+    /**
+     * @return the table used by {@link #isRealizable(int, int, int)}; if none was set, one with bound
+     * {@value #DEFAULT_FEASIBILITY_TABLE_BOUND} is built on first use
+     */
+    public static TripletFeasibilityTable getFeasibilityTable() {
+        TripletFeasibilityTable table = feasibilityTable;
+        if (table == null) {
+            synchronized (SwapTripletRegistry.class) {
+                table = feasibilityTable;
+                if (table == null) {
+                    table = TripletFeasibilityTable.build(DEFAULT_FEASIBILITY_TABLE_BOUND);
+                    feasibilityTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Replaces the table used by {@link #isRealizable(int, int, int)}, e.g., by one with a larger bound.
+     */
+    public static void setFeasibilityTable(TripletFeasibilityTable table) {
+        feasibilityTable = table;
+    }
+
+    /**
+     * @return number of bytes the realizations kept by the registry may take; by default a quarter of the maximum heap
+     * size
+     */
+    public static long getRealizationMemoryBudget() {
+        return realizationMemoryBudget;
+    }
+
+    /**
+     * Sets the number of bytes the realizations kept by the registry may take and, if they exceed it, drops the least
+     * recently used ones as described in {@link SwapTripletRegistry}.
+     * Realizations still referenced from elsewhere stay in memory until they are not used there any more.
+     *
+     * @throws IllegalArgumentException
+     *      if bytes is negative
+     */
+    public static void setRealizationMemoryBudget(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Memory budget must not be negative: " + bytes + ".");
+        }
+        realizationMemoryBudget = bytes;
+        evictIfOverBudget();
+    }
 
+    /**
+     * @return number of bytes taken by the realizations kept by the registry
+     */
+    public static long getResidentRealizationBytes() {
+        return RESIDENT_BYTES.get();
     }
 
+    /**
+     * @return number of times realizations were asked for and had been computed before
+     */
+    public static long getRealizationHits() {
+        return HITS.sum();
+    }
+
+    /**
+     * @return number of times realizations were asked for and had to be computed (again)
+     */
+    public static long getRealizationMisses() {
+        return MISSES.sum();
+    }
+
+    /**
+     * @return number of times realizations were dropped to stay within the memory budget
+     */
+    public static long getRealizationEvictions() {
+        return EVICTIONS.sum();
+    }
+
+    /**
+     * If the realizations exceed the memory budget, drops the ones of the least recently used triplets until the rest
+     * takes at most budget - budget / {@value #EVICTION_HEADROOM_DIVISOR}.
+     */
+    private static void evictIfOverBudget() {
+        if (RESIDENT_BYTES.get() <= realizationMemoryBudget) {
+            return;
+        }
+        synchronized (EVICTION_LOCK) {
+            long budget = realizationMemoryBudget;
+            if (RESIDENT_BYTES.get() <= budget) {
+                return;
+            }
+            //one pass over all entries; the access times may change meanwhile, which only makes the order approximate
+            List<SwapTriplet> residentTriplets = new ArrayList<>();
+            long oldestAccess = Long.MAX_VALUE;
+            for (SwapTriplet swapTriplet : OCCURRENCES_2_SWAP_TRIPLET.values()) {
+                if (swapTriplet.realizations != null) {
+                    residentTriplets.add(swapTriplet);
+                    oldestAccess = Math.min(oldestAccess, swapTriplet.lastAccess);
+                }
+            }
+            //access time relative to the oldest one in the upper half, index in the lower half, sorted as primitives
+            long[] accessAndIndex = new long[residentTriplets.size()];
+            for (int i = 0; i < accessAndIndex.length; i++) {
+                long age = Math.min(residentTriplets.get(i).lastAccess - oldestAccess, Integer.MAX_VALUE);
+                accessAndIndex[i] = (age << 32) | i;
+            }
+            Arrays.sort(accessAndIndex);
+            long target = budget - budget / EVICTION_HEADROOM_DIVISOR;
+            for (int i = 0; i < accessAndIndex.length && RESIDENT_BYTES.get() > target; i++) {
+                if (residentTriplets.get((int) accessAndIndex[i]).evictRealizations() > 0) {
+                    EVICTIONS.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the realizations of the triplets covered by the file at path from now on, instead of computing them.
+     * Realizations computed before are kept.
+     *
+     * @throws IOException
+     *      if it cannot be opened; then the file used before is kept
+     */
+    public static void useRealizationFile(Path path) throws IOException {
+        realizationFile = TripletRealizationFile.open(path);
+    }
+
+    /**
+     * @return the file set by {@link #useRealizationFile(Path)}, null if there is none
+     */
+    public static TripletRealizationFile getRealizationFile() {
+        return realizationFile;
+    }
+
+    /**
+     * @return read-only view of the realizations; each access decodes a new list
+     */
     public static Collection<List<TripletSwap>> getRealizations(int occ01, int occ02, int occ12) {
+        return getPackedRealizations(occ01, occ02, occ12).asList();
+    }
+
+    static PackedTripletRealizations getPackedRealizations(int occ01, int occ02, int occ12) {
         return findSwapTriplet(occ01, occ02, occ12).getRealizations();
     }
 
-    private synchronized static SwapTriplet findSwapTriplet(int occ01, int occ02, int occ12) {
-        SwapTriplet swapTriplet = OCCURRENCES_2_SWAP_TRIPLET.get(new Triplet<>(occ01, occ02, occ12));
+    /**
+     * @return the three numbers of swaps in one key, BITS_PER_COUNT bits each
+     * @throws IllegalArgumentException
+     *      if a number is negative or does not fit
+     */
+    static long packCounts(int occ01, int occ02, int occ12) {
+        if ((occ01 | occ02 | occ12) >>> BITS_PER_COUNT != 0) {
+            throw new IllegalArgumentException("Numbers of swaps must be in [0, 2^" + BITS_PER_COUNT + "): " +
+                    occ01 + ", " + occ02 + ", " + occ12 + ".");
+        }
+        return ((long) occ01 << (2 * BITS_PER_COUNT)) | ((long) occ02 << BITS_PER_COUNT) | occ12;
+    }
+
+    private static SwapTriplet findSwapTriplet(int occ01, int occ02, int occ12) {
+        long key = packCounts(occ01, occ02, occ12);
+        SwapTriplet swapTriplet = OCCURRENCES_2_SWAP_TRIPLET.get(key);
         if (swapTriplet == null) {
-            swapTriplet = new SwapTriplet(occ01, occ02, occ12);
-            OCCURRENCES_2_SWAP_TRIPLET.put(new Triplet<>(occ01, occ02, occ12), swapTriplet);
+            //creating an entry is cheap, its realizations are computed later; if another thread was faster, use its one
+            SwapTriplet newSwapTriplet = new SwapTriplet(occ01, occ02, occ12);
+            swapTriplet = OCCURRENCES_2_SWAP_TRIPLET.putIfAbsent(key, newSwapTriplet);
+            if (swapTriplet == null) {
+                swapTriplet = newSwapTriplet;
+            }
         }
 //        if (swapTriplet.count01swaps == 2 && swapTriplet.count02swaps == 2 && swapTriplet.count12swaps == 2) {
 //            List<List<TripletSwap>> realizations = swapTriplet.getRealizations();
@@ -0,0 +1,288 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Removes triplet realizations that cannot be part of any realization, before searching (AC-3).
+ *
+ * Two triplets sharing two lines share only the swaps of these lines, and every realization executes them in the same
+ * order, so any two realizations of them are compatible.
+ * The smallest constraints that remove anything are the ones of four lines: their four triplets pairwise share two
+ * lines, and one realization of each must combine to an acyclic graph.
+ * A realization of a triplet is removed if, for some fourth line, there is no such combination containing it; then the
+ * other quadruples of this triplet are revised again.
+ *
+ * The acyclic combinations of a quadruple are enumerated when it is revised first and filtered by the remaining
+ * realizations afterwards; only the quadruples enumerated so far are stored.
+ * Quadruples with too many combinations are skipped until the realizations of their triplets got fewer.
+ * Instances with more than {@value #MAX_NUMBER_OF_QUADRUPLES} quadruples are not filtered at all.
+ * The realizations of a quadruple are relabelled only while it is enumerated; only the ones left are kept afterwards.
+ */
+class TripletArcConsistency {
+
+    private static final long MAX_NUMBER_OF_COMBINATIONS = 1 << 16;
+    static final long MAX_NUMBER_OF_QUADRUPLES = 1 << 22;
+
+    private final int numberOfLines;
+    private final List<List<RealizationGraph>> tripletRealizations;
+    private final PartialRealization combination;
+
+    //per triplet (in lexicographic order of the lines): which realizations are left, and how many
+    private final boolean[][] isLeft;
+    private final int[] numberOfLeft;
+
+    //acyclic combinations (four realization indices each) of the quadruples enumerated so far, by their lines
+    private final HashMap<Long, Combinations> combinationsOfQuadruple = new HashMap<>();
+
+    /**
+     * @param tripletRealizations
+     *      for each triplet (i, j, k), i < j < k, in lexicographic order, the list of its realizations
+     */
+    TripletArcConsistency(int numberOfLines, SwapIndexer swapIndexer, List<List<RealizationGraph>> tripletRealizations) {
+        this.numberOfLines = numberOfLines;
+        this.tripletRealizations = tripletRealizations;
+        this.combination = new PartialRealization(swapIndexer);
+        this.isLeft = new boolean[tripletRealizations.size()][];
+        this.numberOfLeft = new int[tripletRealizations.size()];
+        for (int triplet = 0; triplet < tripletRealizations.size(); triplet++) {
+            isLeft[triplet] = new boolean[tripletRealizations.get(triplet).size()];
+            Arrays.fill(isLeft[triplet], true);
+            numberOfLeft[triplet] = isLeft[triplet].length;
+        }
+    }
+
+    /**
+     * If cancellationToken is cancelled, the filtering stops early; the realizations removed so far are still correct.
+     *
+     * @return for each triplet the list of its realizations that are left (in the same order as before), relabelled
+     * once; if one of them is empty, there is no realization
+     */
+    List<List<RealizationGraph>> filter(CancellationToken cancellationToken) {
+        if (binomial(numberOfLines, 4) <= MAX_NUMBER_OF_QUADRUPLES) {
+            propagate(cancellationToken);
+        }
+
+        List<List<RealizationGraph>> filteredRealizations = new ArrayList<>(tripletRealizations.size());
+        for (int triplet = 0; triplet < tripletRealizations.size(); triplet++) {
+            List<RealizationGraph> realizations = tripletRealizations.get(triplet);
+            ArrayList<RealizationGraph> realizationsLeft = new ArrayList<>(numberOfLeft[triplet]);
+            for (int i = 0; i < realizations.size(); i++) {
+                if (isLeft[triplet][i]) {
+                    realizationsLeft.add(realizations.get(i));
+                }
+            }
+            filteredRealizations.add(realizationsLeft);
+        }
+        return filteredRealizations;
+    }
+
+    /**
+     * Revises every quadruple once, then the quadruples of the triplets that lost realizations until nothing changes.
+     */
+    private void propagate(CancellationToken cancellationToken) {
+        //ring queue of the triplets whose quadruples are to be revised again, each triplet at most once
+        int numberOfTriplets = tripletRealizations.size();
+        int[] queue = new int[Math.max(1, numberOfTriplets)];
+        int queueHead = 0;
+        int queueSize = 0;
+        boolean[] isQueued = new boolean[numberOfTriplets];
+        int[] lines = new int[4];
+        for (int a = 0; a < numberOfLines - 3; a++) {
+            for (int b = a + 1; b < numberOfLines - 2; b++) {
+                for (int c = b + 1; c < numberOfLines - 1; c++) {
+                    if (cancellationToken.isCancelled()) {
+                        return;
+                    }
+                    for (int d = c + 1; d < numberOfLines; d++) {
+                        lines[0] = a;
+                        lines[1] = b;
+                        lines[2] = c;
+                        lines[3] = d;
+                        for (int triplet : revise(lines)) {
+                            if (numberOfLeft[triplet] == 0) {
+                                return;
+                            }
+                            if (!isQueued[triplet]) {
+                                queue[(queueHead + queueSize++) % queue.length] = triplet;
+                                isQueued[triplet] = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        int[] linesOfTriplet = new int[3];
+        while (queueSize > 0 && !cancellationToken.isCancelled()) {
+            int changedTriplet = queue[queueHead];
+            queueHead = (queueHead + 1) % queue.length;
+            --queueSize;
+            isQueued[changedTriplet] = false;
+            getLinesOfTriplet(changedTriplet, linesOfTriplet);
+            for (int line = 0; line < numberOfLines; line++) {
+                if (line == linesOfTriplet[0] || line == linesOfTriplet[1] || line == linesOfTriplet[2]) {
+                    continue;
+                }
+                lines[0] = linesOfTriplet[0];
+                lines[1] = linesOfTriplet[1];
+                lines[2] = linesOfTriplet[2];
+                lines[3] = line;
+                Arrays.sort(lines);
+                for (int triplet : revise(lines)) {
+                    if (numberOfLeft[triplet] == 0) {
+                        return;
+                    }
+                    if (!isQueued[triplet]) {
+                        queue[(queueHead + queueSize++) % queue.length] = triplet;
+                        isQueued[triplet] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the realizations of the triplets of the quadruple that are in no acyclic combination.
+     *
+     * @param lines
+     *      the lines a < b < c < d of the quadruple
+     * @return the triplets of the quadruple that lost realizations
+     */
+    private List<Integer> revise(int[] lines) {
+        int[] triplets = {getTripletRank(lines[0], lines[1], lines[2]), getTripletRank(lines[0], lines[1], lines[3]),
+                getTripletRank(lines[0], lines[2], lines[3]), getTripletRank(lines[1], lines[2], lines[3])};
+        long key = ((long) lines[0] << 48) | ((long) lines[1] << 32) | ((long) lines[2] << 16) | lines[3];
+        Combinations combinations = combinationsOfQuadruple.get(key);
+        if (combinations == null) {
+            long product = 1;
+            for (int triplet : triplets) {
+                product *= numberOfLeft[triplet];
+            }
+            if (product > MAX_NUMBER_OF_COMBINATIONS) {
+                return new ArrayList<>(0);
+            }
+            combinations = new Combinations();
+            RealizationGraph[][] realizationsLeft = new RealizationGraph[4][];
+            for (int t = 0; t < 4; t++) {
+                List<RealizationGraph> realizations = tripletRealizations.get(triplets[t]);
+                realizationsLeft[t] = new RealizationGraph[realizations.size()];
+                for (int i = 0; i < realizations.size(); i++) {
+                    if (isLeft[triplets[t]][i]) {
+                        realizationsLeft[t][i] = realizations.get(i);
+                    }
+                }
+            }
+            enumerateCombinations(realizationsLeft, combinations, 0, new int[4]);
+            combinationsOfQuadruple.put(key, combinations);
+        }
+
+        //drop the combinations with removed realizations, the other ones support their realizations
+        int[] realizations = combinations.realizations;
+        boolean[][] isSupported = new boolean[4][];
+        for (int t = 0; t < 4; t++) {
+            isSupported[t] = new boolean[isLeft[triplets[t]].length];
+        }
+        int numberOfValid = 0;
+        for (int c = 0; c < combinations.count; c++) {
+            boolean isValid = true;
+            for (int t = 0; t < 4 && isValid; t++) {
+                isValid = isLeft[triplets[t]][realizations[4 * c + t]];
+            }
+            if (isValid) {
+                for (int t = 0; t < 4; t++) {
+                    isSupported[t][realizations[4 * c + t]] = true;
+                }
+                System.arraycopy(realizations, 4 * c, realizations, 4 * numberOfValid++, 4);
+            }
+        }
+        combinations.count = numberOfValid;
+
+        List<Integer> changedTriplets = new ArrayList<>(4);
+        for (int t = 0; t < 4; t++) {
+            int triplet = triplets[t];
+            for (int i = 0; i < isLeft[triplet].length; i++) {
+                if (isLeft[triplet][i] && !isSupported[t][i]) {
+                    isLeft[triplet][i] = false;
+                    --numberOfLeft[triplet];
+                    if (changedTriplets.isEmpty() || changedTriplets.get(changedTriplets.size() - 1) != triplet) {
+                        changedTriplets.add(triplet);
+                    }
+                }
+            }
+        }
+        return changedTriplets;
+    }
+
+    /**
+     * Depth-first search over the realizations left, one of the four triplets per depth, rejecting cycles early.
+     *
+     * @param realizationsLeft
+     *      per triplet of the quadruple its relabelled realizations, null where removed
+     */
+    private void enumerateCombinations(RealizationGraph[][] realizationsLeft, Combinations combinations, int depth,
+                                       int[] chosen) {
+        if (depth == 4) {
+            if (4 * combinations.count == combinations.realizations.length) {
+                combinations.realizations = Arrays.copyOf(combinations.realizations,
+                        2 * combinations.realizations.length);
+            }
+            System.arraycopy(chosen, 0, combinations.realizations, 4 * combinations.count++, 4);
+            return;
+        }
+        RealizationGraph[] realizations = realizationsLeft[depth];
+        for (int i = 0; i < realizations.length; i++) {
+            if (realizations[i] != null && combination.push(realizations[i])) {
+                chosen[depth] = i;
+                enumerateCombinations(realizationsLeft, combinations, depth + 1, chosen);
+                combination.pop();
+            }
+        }
+    }
+
+    /**
+     * @return rank of the triplet i < j < k in lexicographic order: the triplets starting with a smaller line, then
+     * the ones starting with i and continuing with a smaller line, then the ones starting with i, j
+     */
+    private int getTripletRank(int i, int j, int k) {
+        return (int) (binomial(numberOfLines, 3) - binomial(numberOfLines - i, 3) +
+                binomial(numberOfLines - i - 1, 2) - binomial(numberOfLines - j, 2) + k - j - 1);
+    }
+
+    /**
+     * Inverse of {@link #getTripletRank(int, int, int)}.
+     */
+    private void getLinesOfTriplet(int rank, int[] lines) {
+        int i = 0;
+        while (i + 3 < numberOfLines && getTripletRank(i + 1, i + 2, i + 3) <= rank) {
+            ++i;
+        }
+        int j = i + 1;
+        while (j + 2 < numberOfLines && getTripletRank(i, j + 1, j + 2) <= rank) {
+            ++j;
+        }
+        lines[0] = i;
+        lines[1] = j;
+        lines[2] = j + 1 + rank - getTripletRank(i, j, j + 1);
+    }
+
+    /**
+     * @return n choose k, for k <= 4
+     */
+    private static long binomial(int n, int k) {
+        if (n < k) {
+            return 0;
+        }
+        long binomial = 1;
+        for (int i = 0; i < k; i++) {
+            binomial = binomial * (n - i) / (i + 1);
+        }
+        return binomial;
+    }
+
+    private static final class Combinations {
+        private int[] realizations = new int[16];
+        private int count = 0;
+    }
+}
@@ -0,0 +1,89 @@
+package model;
+
+import java.util.stream.IntStream;
+
+/**
+ * Which triplets of lines with a, b, c swaps of their pairs (0,1), (0,2), (1,2) are realizable, for all a, b, c up to a
+ * bound; one bit each.
+ *
+ * It is filled bottom-up with the recursion of {@link SwapTripletRegistry}: (a, b, c) is realizable iff it is
+ * (0, 0, 0), or a > 0 and (a - 1, c, b) is realizable, or c > 0 and (b, a, c - 1) is realizable.
+ * Both have one swap less, so the table is filled in order of increasing a + b + c; the entries with the same sum are
+ * independent of each other and are filled in parallel.
+ * Each (a, b) has a row of whole longs for its c values, so threads working on different a never write the same long.
+ */
+public class TripletFeasibilityTable {
+
+    private final int maxCount;
+    private final int longsPerRow;
+    private final long[] bits;
+
+    private TripletFeasibilityTable(int maxCount) {
+        this.maxCount = maxCount;
+        this.longsPerRow = (maxCount + 64) / 64;
+        long numberOfLongs = (long) (maxCount + 1) * (maxCount + 1) * longsPerRow;
+        if (numberOfLongs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bound " + maxCount + " is too large for a feasibility table.");
+        }
+        this.bits = new long[(int) numberOfLongs];
+    }
+
+    /**
+     * @param maxCount
+     *      the table covers all numbers of swaps from 0 to maxCount (for each pair); it needs about
+     *      (maxCount + 1)^3 / 8 bytes
+     */
+    public static TripletFeasibilityTable build(int maxCount) {
+        if (maxCount < 0) {
+            throw new IllegalArgumentException("Bound must not be negative: " + maxCount + ".");
+        }
+        TripletFeasibilityTable table = new TripletFeasibilityTable(maxCount);
+        table.set(0, 0, 0);
+        for (int sum = 1; sum <= 3 * maxCount; sum++) {
+            int currentSum = sum;
+            IntStream.rangeClosed(Math.max(0, sum - 2 * maxCount), Math.min(maxCount, sum)).parallel()
+                    .forEach(a -> table.fill(a, currentSum));
+        }
+        return table;
+    }
+
+    /**
+     * Fills the entries (a, b, c) with a + b + c = sum.
+     */
+    private void fill(int a, int sum) {
+        for (int b = Math.max(0, sum - a - maxCount); b <= Math.min(maxCount, sum - a); b++) {
+            int c = sum - a - b;
+            if ((a > 0 && isRealizable(a - 1, c, b)) || (c > 0 && isRealizable(b, a, c - 1))) {
+                set(a, b, c);
+            }
+        }
+    }
+
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * @return true iff all numbers are at most {@link #getMaxCount()} (and not negative)
+     */
+    public boolean covers(int occ01, int occ02, int occ12) {
+        return occ01 >= 0 && occ02 >= 0 && occ12 >= 0 && occ01 <= maxCount && occ02 <= maxCount
+                && occ12 <= maxCount;
+    }
+
+    /**
+     * Numbers not covered by this table must not be passed.
+     */
+    public boolean isRealizable(int occ01, int occ02, int occ12) {
+        int index = getRowIndex(occ01, occ02) + (occ12 >>> 6);
+        return (bits[index] & (1L << occ12)) != 0;
+    }
+
+    private void set(int occ01, int occ02, int occ12) {
+        bits[getRowIndex(occ01, occ02) + (occ12 >>> 6)] |= 1L << occ12;
+    }
+
+    private int getRowIndex(int occ01, int occ02) {
+        return (occ01 * (maxCount + 1) + occ02) * longsPerRow;
+    }
+}
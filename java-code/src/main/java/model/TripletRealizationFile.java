@@ -0,0 +1,262 @@
+package model;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only file of the realizations of all triplets with at most bound swaps per pair, as computed by the
+ * {@link SwapTripletRegistry}; it is mapped into memory once, so a new JVM does not compute them again.
+ *
+ * Layout (little endian):
+ * a header of four ints (magic number, version, bound, unused);
+ * an index with two longs per triplet (a, b, c), ordered by a, then b, then c: the byte offset of its realizations and
+ * their number;
+ * the realizations of each triplet as the longs of a {@link PackedTripletRealizations}.
+ * The data after the index is mapped in segments of {@value #SEGMENT_BYTES} bytes that start every
+ * {@value #SEGMENT_STRIDE} bytes, so the realizations of each triplet are within one segment.
+ * It can be read by several threads at the same time.
+ */
+public class TripletRealizationFile {
+
+    private static final int MAGIC_NUMBER = 0x54524c5a;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 16;
+    //number of longs written at once
+    private static final int LONGS_PER_WRITE = 1 << 17;
+    //segments overlap by one stride, which bounds the bytes of the realizations of a triplet
+    private static final long SEGMENT_STRIDE = 1L << 30;
+    private static final long SEGMENT_BYTES = 2 * SEGMENT_STRIDE - 8;
+
+    private final int bound;
+    private final LongBuffer index;
+    private final long dataOffset;
+    private final LongBuffer[] segments;
+
+    private TripletRealizationFile(int bound, LongBuffer index, long dataOffset, LongBuffer[] segments) {
+        this.bound = bound;
+        this.index = index;
+        this.dataOffset = dataOffset;
+        this.segments = segments;
+    }
+
+    /**
+     * Maps the file at path after checking that the realizations of every triplet in its index are within it; the
+     * mapping stays valid as long as this object is used.
+     *
+     * @throws IOException
+     *      if it cannot be read or is no such file
+     */
+    public static TripletRealizationFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(path + " is no triplet realization file.");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC_NUMBER || header.getInt(4) != VERSION) {
+                throw new IOException(path + " is no triplet realization file of version " + VERSION + ".");
+            }
+            int bound = header.getInt(8);
+            if (bound < 0) {
+                throw new IOException(path + " has a negative bound.");
+            }
+            long indexBytes = getNumberOfTriplets(bound) * INDEX_ENTRY_BYTES;
+            if (channel.size() < HEADER_BYTES + indexBytes) {
+                throw new IOException(path + " is truncated.");
+            }
+            LongBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, indexBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            long dataOffset = HEADER_BYTES + indexBytes;
+            long dataBytes = channel.size() - dataOffset;
+            int entry = 0;
+            for (int a = 0; a <= bound; a++) {
+                for (int b = 0; b <= bound; b++) {
+                    for (int c = 0; c <= bound; c++) {
+                        long offset = index.get(entry) - dataOffset;
+                        long size = index.get(entry + 1);
+                        entry += 2;
+                        long bytes = 8 * size * PackedTripletRealizations.getLongsPerRealization(a + b + c);
+                        if (offset < 0 || offset % 8 != 0 || size < 0 || size > Integer.MAX_VALUE ||
+                                bytes > SEGMENT_STRIDE || offset > dataBytes - bytes) {
+                            throw new IOException(path + " has an invalid index entry for (" + a + ", " + b + ", " +
+                                    c + "): offset " + (offset + dataOffset) + ", " + size + " realizations.");
+                        }
+                    }
+                }
+            }
+            LongBuffer[] segments = new LongBuffer[(int) ((dataBytes + SEGMENT_STRIDE - 1) / SEGMENT_STRIDE)];
+            for (int segment = 0; segment < segments.length; segment++) {
+                long segmentOffset = segment * SEGMENT_STRIDE;
+                segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + segmentOffset,
+                        Math.min(SEGMENT_BYTES, dataBytes - segmentOffset))
+                        .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+            return new TripletRealizationFile(bound, index, dataOffset, segments);
+        }
+    }
+
+    /**
+     * Writes the realizations of all triplets with at most bound swaps per pair to path, taking them from the
+     * {@link SwapTripletRegistry}; so if it uses a file with a smaller bound, the realizations in there are not
+     * computed again.
+     * The file is written next to path first and then moved, such that path is replaced only by a complete file.
+     *
+     * @throws IllegalArgumentException
+     *      if bound is negative or greater than {@link #getMaximumBound()}; this is checked before anything is written
+     * @throws IOException
+     *      if it cannot be written
+     */
+    public static void write(Path path, int bound) throws IOException {
+        if (bound < 0 || bound > getMaximumBound()) {
+            throw new IllegalArgumentException("Bound must be in [0, " + getMaximumBound() + "], such that the " +
+                    "realizations of every triplet can be mapped: " + bound + ".");
+        }
+        Path absolutePath = path.toAbsolutePath();
+        Path temporaryPath = absolutePath.resolveSibling(absolutePath.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                int indexBytes = (int) (getNumberOfTriplets(bound) * INDEX_ENTRY_BYTES);
+                byte[] headerAndIndexBytes = new byte[HEADER_BYTES + indexBytes];
+                ByteBuffer headerAndIndex = ByteBuffer.wrap(headerAndIndexBytes).order(ByteOrder.LITTLE_ENDIAN);
+                headerAndIndex.putInt(0, MAGIC_NUMBER);
+                headerAndIndex.putInt(4, VERSION);
+                headerAndIndex.putInt(8, bound);
+                //the data of consecutive triplets is collected in one chunk and written when it is full
+                byte[] chunkBytes = new byte[8 * LONGS_PER_WRITE];
+                LongBuffer chunk = ByteBuffer.wrap(chunkBytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                int longsInChunk = 0;
+                long chunkOffset = HEADER_BYTES + indexBytes;
+                long offset = chunkOffset;
+                int entry = HEADER_BYTES;
+                for (int a = 0; a <= bound; a++) {
+                    for (int b = 0; b <= bound; b++) {
+                        for (int c = 0; c <= bound; c++) {
+                            PackedTripletRealizations realizations =
+                                    SwapTripletRegistry.getPackedRealizations(a, b, c);
+                            headerAndIndex.putLong(entry, offset);
+                            headerAndIndex.putLong(entry + 8, realizations.size());
+                            entry += INDEX_ENTRY_BYTES;
+                            int numberOfLongs = realizations.getNumberOfLongs();
+                            for (int first = 0; first < numberOfLongs; ) {
+                                int count = Math.min(numberOfLongs - first, LONGS_PER_WRITE - longsInChunk);
+                                realizations.copyArenaTo(first, count, chunk, longsInChunk);
+                                first += count;
+                                longsInChunk += count;
+                                if (longsInChunk == LONGS_PER_WRITE) {
+                                    writeFully(channel, chunkBytes, 8 * longsInChunk, chunkOffset);
+                                    chunkOffset += 8L * longsInChunk;
+                                    longsInChunk = 0;
+                                }
+                            }
+                            offset += 8L * numberOfLongs;
+                        }
+                    }
+                }
+                writeFully(channel, chunkBytes, 8 * longsInChunk, chunkOffset);
+                writeFully(channel, headerAndIndexBytes, headerAndIndexBytes.length, 0);
+                channel.force(true);
+            }
+            Files.move(temporaryPath, absolutePath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Writes the first length bytes at position of the file.
+     */
+    private static void writeFully(FileChannel channel, byte[] bytes, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public int getBound() {
+        return bound;
+    }
+
+    public boolean covers(int count01, int count02, int count12) {
+        return count01 <= bound && count02 <= bound && count12 <= bound;
+    }
+
+    /**
+     * @return the realizations of the triplet, a view of the mapped file
+     */
+    PackedTripletRealizations getRealizations(int count01, int count02, int count12) {
+        int entry = 2 * ((count01 * (bound + 1) + count02) * (bound + 1) + count12);
+        long offset = index.get(entry) - dataOffset;
+        int size = (int) index.get(entry + 1);
+        int length = count01 + count02 + count12;
+        int numberOfLongs = size * PackedTripletRealizations.getLongsPerRealization(length);
+        if (numberOfLongs == 0) {
+            return new PackedTripletRealizations(length, size, LongBuffer.allocate(0));
+        }
+        int segment = (int) (offset / SEGMENT_STRIDE);
+        int first = (int) ((offset - segment * SEGMENT_STRIDE) / 8);
+        //through Buffer, whose methods exist in every Java version (LongBuffer overrides them only since Java 9)
+        LongBuffer arena = segments[segment].duplicate();
+        ((Buffer) arena).position(first);
+        ((Buffer) arena).limit(first + numberOfLongs);
+        return new PackedTripletRealizations(length, size, arena.slice());
+    }
+
+    /**
+     * @return greatest bound of a file that can be written (and opened): for a greater one, the realizations of some
+     * triplet take more than {@value #SEGMENT_STRIDE} bytes
+     */
+    public static int getMaximumBound() {
+        int bound = 0;
+        while (isMappable(bound + 1)) {
+            ++bound;
+        }
+        return bound;
+    }
+
+    /**
+     * Counts the realizations of each triplet by the recursion of the {@link SwapTripletRegistry}; it stops at the
+     * first one too large, so the counts do not overflow.
+     *
+     * @return true iff the realizations of every triplet with at most bound swaps per pair take at most
+     * {@value #SEGMENT_STRIDE} bytes
+     */
+    private static boolean isMappable(int bound) {
+        long[][][] numberOfRealizations = new long[bound + 1][bound + 1][bound + 1];
+        //the recursion leads to triplets with one swap less
+        for (int length = 0; length <= 3 * bound; length++) {
+            for (int a = 0; a <= Math.min(bound, length); a++) {
+                for (int b = Math.max(0, length - a - bound); b <= Math.min(bound, length - a); b++) {
+                    int c = length - a - b;
+                    long count = length == 0 ? 1 : 0;
+                    if (a > 0) {
+                        count += numberOfRealizations[a - 1][c][b];
+                    }
+                    if (c > 0) {
+                        count += numberOfRealizations[b][a][c - 1];
+                    }
+                    numberOfRealizations[a][b][c] = count;
+                    int longsPerRealization = PackedTripletRealizations.getLongsPerRealization(length);
+                    if (longsPerRealization > 0 && count > SEGMENT_STRIDE / (8L * longsPerRealization)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static long getNumberOfTriplets(int bound) {
+        return (long) (bound + 1) * (bound + 1) * (bound + 1);
+    }
+}
@@ -0,0 +1,44 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds a {@link TripletRealizationFile}, or extends one to a greater bound.
+ *
+ * Usage: TripletRealizationFileGenerator &lt;path&gt; &lt;bound&gt;
+ * The bound is at most {@link TripletRealizationFile#getMaximumBound()}, beyond which the realizations of a triplet
+ * could not be mapped.
+ * If there is a file at path already, its realizations are read instead of computed again.
+ */
+public class TripletRealizationFileGenerator {
+
+    public static void main(String[] args) throws IOException {
+        int maximumBound = TripletRealizationFile.getMaximumBound();
+        if (args.length != 2 || Integer.parseInt(args[1]) < 0 || Integer.parseInt(args[1]) > maximumBound) {
+            System.err.println("Usage: TripletRealizationFileGenerator <path> <bound>, where 0 <= bound <= " +
+                    maximumBound + ".");
+            System.exit(1);
+        }
+        Path path = Paths.get(args[0]);
+        int bound = Integer.parseInt(args[1]);
+        if (Files.exists(path)) {
+            SwapTripletRegistry.useRealizationFile(path);
+            int existingBound = SwapTripletRegistry.getRealizationFile().getBound();
+            if (existingBound >= bound) {
+                System.out.println(path + " covers bound " + existingBound + " already.");
+                return;
+            }
+            System.out.println("Extending " + path + " from bound " + existingBound + " to " + bound + ".");
+        }
+        else {
+            System.out.println("Building " + path + " for bound " + bound + ".");
+        }
+        long start = System.currentTimeMillis();
+        TripletRealizationFile.write(path, bound);
+        System.out.println("Done in " + (System.currentTimeMillis() - start) + " ms, " + Files.size(path) +
+                " bytes.");
+    }
+}
@@ -0,0 +1,100 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The realizations of a triplet of lines with a, b, c swaps of its pairs (0,1), (0,2), (1,2); stored once for all
+ * triplets (of all instances) with these numbers of swaps, namely packed in the {@link SwapTripletRegistry}.
+ *
+ * Only the line pair of each swap of a realization is used.
+ * Which swap of a pair is executed follows from the number of its swaps executed before: the lines of a pair alternate,
+ * so the t-th swap of a pair is the t-th swap id of the pair in the {@link SwapIndexer}.
+ * {@link #relabel(int, SwapIndexer, int, int, int)} turns a realization into one of concrete lines.
+ */
+class TripletRealizationTemplate {
+
+    private final PackedTripletRealizations realizations;
+
+    private TripletRealizationTemplate(PackedTripletRealizations realizations) {
+        this.realizations = realizations;
+    }
+
+    static TripletRealizationTemplate of(int count01, int count02, int count12) {
+        return new TripletRealizationTemplate(SwapTripletRegistry.getPackedRealizations(count01, count02, count12));
+    }
+
+    int size() {
+        return realizations.size();
+    }
+
+    /**
+     * @param offset01
+     *      see {@link SwapIndexer#getPairOffset(int, int)} for the lines 0 and 1 of this template; likewise offset02
+     *      and offset12
+     * @return the realization with this index as a realization of the concrete lines
+     */
+    RealizationGraph relabel(int index, SwapIndexer swapIndexer, int offset01, int offset02, int offset12) {
+        int[] executionSequence = new int[realizations.getLength()];
+        int next01 = offset01;
+        int next02 = offset02;
+        int next12 = offset12;
+        for (int position = 0; position < executionSequence.length; position++) {
+            switch (PackedTripletRealizations.getPair(realizations.getCode(index, position))) {
+                case 0:
+                    executionSequence[position] = next01++;
+                    break;
+                case 1:
+                    executionSequence[position] = next02++;
+                    break;
+                default:
+                    executionSequence[position] = next12++;
+                    break;
+            }
+        }
+        return RealizationGraph.ofExecutionSequence(swapIndexer, executionSequence);
+    }
+
+    /**
+     * @return the realizations of the lines line0 < line1 < line2, relabelled whenever they are accessed; callers
+     * accessing them repeatedly copy the ones they need
+     */
+    List<RealizationGraph> forTriplet(SwapIndexer swapIndexer, int line0, int line1, int line2) {
+        return new RelabelledList(this, swapIndexer, swapIndexer.getPairOffset(line0, line1),
+                swapIndexer.getPairOffset(line0, line2), swapIndexer.getPairOffset(line1, line2));
+    }
+
+    /**
+     * Read-only list of the realizations of one triplet; only the template and the offsets of its line pairs are
+     * stored, so a realization is not kept after it is accessed.
+     * It can be read by several threads at the same time.
+     */
+    private static final class RelabelledList extends AbstractList<RealizationGraph> implements RandomAccess {
+
+        private final TripletRealizationTemplate template;
+        private final SwapIndexer swapIndexer;
+        private final int offset01;
+        private final int offset02;
+        private final int offset12;
+
+        RelabelledList(TripletRealizationTemplate template, SwapIndexer swapIndexer, int offset01, int offset02,
+                       int offset12) {
+            this.template = template;
+            this.swapIndexer = swapIndexer;
+            this.offset01 = offset01;
+            this.offset02 = offset02;
+            this.offset12 = offset12;
+        }
+
+        @Override
+        public RealizationGraph get(int index) {
+            return template.relabel(index, swapIndexer, offset01, offset02, offset12);
+        }
+
+        @Override
+        public int size() {
+            return template.size();
+        }
+    }
+}